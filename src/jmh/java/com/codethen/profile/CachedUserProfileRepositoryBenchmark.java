@@ -0,0 +1,74 @@
+package com.codethen.profile;
+
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import com.codethen.telegram.lanxatbot.profile.UserProfile;
+import com.codethen.telegram.lanxatbot.profile.UserProfileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CachedUserProfileRepository#getProfileById} when the profile is cached (every update of a known user).
+ * The repository logs each call; output is discarded here, but its cost is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CachedUserProfileRepositoryBenchmark {
+
+    private static final int USERS = 1000;
+
+    private CachedUserProfileRepository repository;
+    private PrintStream out;
+
+    @Setup
+    public void setup() {
+
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        repository = new CachedUserProfileRepository(new UserProfileRepository() {
+            @Override
+            public UserProfile getProfileById(Long userId) {
+                final UserProfile profile = new UserProfile();
+                profile.setId(userId);
+                profile.setEnabled(true);
+                profile.setLangConfigs(Map.of("inline", new LangConfig(null, "en", "ru")));
+                return profile;
+            }
+
+            @Override
+            public void saveOrUpdate(UserProfile profile) {}
+        }, new SimpleMeterRegistry());
+
+        for (long userId = 0; userId < USERS; userId++) repository.getProfileById(userId);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @State(Scope.Thread)
+    public static class User {
+        long next;
+    }
+
+    @Benchmark
+    public UserProfile getProfileByIdHit(User user) {
+        return repository.getProfileById(user.next++ % USERS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UserProfile getProfileByIdHitContended(User user) {
+        return repository.getProfileById(user.next++ % USERS);
+    }
+}
@@ -0,0 +1,36 @@
+package com.codethen.telegram.lanxatbot;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultArticle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the results of an inline answer, see {@link LanXatTelegramBot#buildResult}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InlineResultBenchmark {
+
+    private final String text = "How are you doing today?";
+    private final String translation = "Как у тебя дела сегодня?";
+
+    @Benchmark
+    public InlineQueryResultArticle buildResult() {
+        return LanXatTelegramBot.buildResult(LanXatTelegramBot.getThumbnail("ru"), "ru", translation, "1");
+    }
+
+    /** The four results of an answer, as in the bot */
+    @Benchmark
+    public void buildAnswerResults(Blackhole bh) {
+        bh.consume(LanXatTelegramBot.buildResult(LanXatTelegramBot.getThumbnail("ru"), "ru", translation, "1"));
+        bh.consume(LanXatTelegramBot.buildResult(LanXatTelegramBot.getThumbnail("en"), "en (original)", text, "2"));
+        bh.consume(LanXatTelegramBot.buildResult(LanXatTelegramBot.getThumbnail("en"), "en -> ru -> en (reversed)", text, "3"));
+        bh.consume(LanXatTelegramBot.buildResult(null, "en / ru", "- " + text + "\n" + "- " + translation, "4"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.codethen.telegram.lanxatbot;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cost of parsing an inline query (done on every keystroke) with {@link QueryParser},
+ * compared with the regular expressions it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryParserBenchmark {
+
+    private static final String hintsAndLangsPatternStr = "(?:\\(([a-z,]*)\\)\\s+)?\\.([a-z][a-z])\\.([a-z][a-z])";
+    private static final String langConfigPatternStr = "\\.(\\w+)";
+    private static final String messagePatternStr = "\\s+(.+)";
+    private static final Pattern hintsAndLangsAndMessagePattern = Pattern.compile(hintsAndLangsPatternStr + messagePatternStr);
+    private static final Pattern langConfigAndMessagePattern = Pattern.compile(langConfigPatternStr + messagePatternStr);
+    private static final Pattern hintsAndLangConfigSetupPattern = Pattern.compile(langConfigPatternStr + "\\s*=\\s*" + "(?:" + hintsAndLangsPatternStr + ")?");
+
+    @Param({
+            "How are you doing today?",
+            ".en.ru How are you doing today?",
+            "(es,en) .en.ru How are you doing today?",
+            ".work How are you doing today?"
+    })
+    public String query;
+
+    private final ParsedQuery parsed = new ParsedQuery();
+
+    @Benchmark
+    public void regexTranslation(Blackhole bh) {
+
+        final Matcher hintsAndLangsAndMessage = hintsAndLangsAndMessagePattern.matcher(query);
+        if (hintsAndLangsAndMessage.matches()) {
+            bh.consume(hintsAndLangsAndMessage.group(1));
+            bh.consume(hintsAndLangsAndMessage.group(2));
+            bh.consume(hintsAndLangsAndMessage.group(3));
+            bh.consume(hintsAndLangsAndMessage.group(4));
+            return;
+        }
+
+        final Matcher langConfigAndMessage = langConfigAndMessagePattern.matcher(query);
+        if (langConfigAndMessage.matches()) {
+            bh.consume(langConfigAndMessage.group(1));
+            bh.consume(langConfigAndMessage.group(2));
+            return;
+        }
+
+        bh.consume(query);
+    }
+
+    @Benchmark
+    public ParsedQuery parserTranslation() {
+        return QueryParser.parseTranslation(query, parsed);
+    }
+
+    @Benchmark
+    public boolean regexSetup() {
+        return hintsAndLangConfigSetupPattern.matcher(query).matches();
+    }
+
+    @Benchmark
+    public ParsedQuery parserSetup() {
+        return QueryParser.parseSetup(query, parsed);
+    }
+}
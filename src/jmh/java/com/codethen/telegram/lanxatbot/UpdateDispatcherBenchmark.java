@@ -0,0 +1,69 @@
+package com.codethen.telegram.lanxatbot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Time to process a burst of updates from many users with each {@link UpdateDispatcher} mode.
+ * Updates may block (e.g. waiting for a profile from the database), which is simulated with {@link #blockMicros}.
+ * The virtual mode needs Java 21; on older JVMs its runs fail and the striped ones still run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpdateDispatcherBenchmark {
+
+    private static final int UPDATES = 1000;
+    private static final int USERS = 100;
+
+    @Param({"striped", "virtual"})
+    public String mode;
+
+    @Param({"0", "1000"})
+    public long blockMicros;
+
+    private UpdateDispatcher dispatcher;
+
+    @Setup
+    public void setup() {
+        switch (mode) {
+            case "striped":
+                dispatcher = new StripedUpdateDispatcher(Runtime.getRuntime().availableProcessors() * 2, UPDATES);
+                break;
+            case "virtual":
+                if (!VirtualThreadUpdateDispatcher.isSupported()) {
+                    throw new IllegalStateException("Virtual threads are not supported by this JVM");
+                }
+                dispatcher = new VirtualThreadUpdateDispatcher(UPDATES);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    public void dispatchBurst() throws InterruptedException {
+
+        final CountDownLatch done = new CountDownLatch(UPDATES);
+
+        for (int i = 0; i < UPDATES; i++) {
+            dispatcher.dispatch(i % USERS, () -> {
+                if (blockMicros > 0) LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(blockMicros));
+                done.countDown();
+            });
+        }
+
+        done.await();
+    }
+}
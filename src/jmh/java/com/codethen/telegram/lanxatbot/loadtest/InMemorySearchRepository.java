@@ -0,0 +1,23 @@
+package com.codethen.telegram.lanxatbot.loadtest;
+
+import com.codethen.telegram.lanxatbot.search.SearchEntry;
+import com.codethen.telegram.lanxatbot.search.SearchRepository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Only counts the searches, instead of storing them in Mongo */
+class InMemorySearchRepository implements SearchRepository {
+
+    private final LongAdder searches = new LongAdder();
+
+    @Override
+    public CompletableFuture<Void> registerSearch(SearchEntry searchEntry) {
+        searches.increment();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    long getSearches() {
+        return searches.sum();
+    }
+}
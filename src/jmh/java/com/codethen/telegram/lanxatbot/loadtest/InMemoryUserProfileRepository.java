@@ -0,0 +1,26 @@
+package com.codethen.telegram.lanxatbot.loadtest;
+
+import com.codethen.telegram.lanxatbot.exception.ProfileNotExistsException;
+import com.codethen.telegram.lanxatbot.profile.UserProfile;
+import com.codethen.telegram.lanxatbot.profile.UserProfileRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Profiles kept in memory instead of Mongo */
+class InMemoryUserProfileRepository implements UserProfileRepository {
+
+    private final Map<Long, UserProfile> profiles = new ConcurrentHashMap<>();
+
+    @Override
+    public UserProfile getProfileById(Long userId) throws ProfileNotExistsException {
+        final UserProfile profile = profiles.get(userId);
+        if (profile == null) throw new ProfileNotExistsException(userId);
+        return profile;
+    }
+
+    @Override
+    public void saveOrUpdate(UserProfile profile) {
+        profiles.put(profile.getId(), profile);
+    }
+}
@@ -0,0 +1,42 @@
+package com.codethen.telegram.lanxatbot.loadtest;
+
+import java.util.Arrays;
+
+/** Collects latencies and reports percentiles; every sample is kept, which is fine for a load test run */
+class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int count;
+
+    synchronized void record(long nanos) {
+        if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+        samples[count++] = nanos;
+    }
+
+    synchronized int getCount() {
+        return count;
+    }
+
+    /** Count, throughput and percentiles in milliseconds */
+    synchronized String report(double seconds) {
+
+        if (count == 0) return "no samples";
+
+        final long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+
+        return String.format("%7d (%7.1f/s)  p50 %8.1f ms  p99 %8.1f ms  p999 %8.1f ms  max %8.1f ms",
+                count, count / seconds,
+                millis(percentile(sorted, 50)), millis(percentile(sorted, 99)),
+                millis(percentile(sorted, 99.9)), millis(sorted[count - 1]));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,368 @@
+package com.codethen.telegram.lanxatbot.loadtest;
+
+import com.codethen.telegram.lanxatbot.AdaptiveDebouncer;
+import com.codethen.telegram.lanxatbot.HashedWheelTimer;
+import com.codethen.telegram.lanxatbot.InlineAnswerCache;
+import com.codethen.telegram.lanxatbot.LanXatTelegramBot;
+import com.codethen.telegram.lanxatbot.StripedUpdateDispatcher;
+import com.codethen.telegram.lanxatbot.TelegramSender;
+import com.codethen.telegram.lanxatbot.UpdateDispatcher;
+import com.codethen.telegram.lanxatbot.VirtualThreadUpdateDispatcher;
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import com.codethen.telegram.lanxatbot.profile.UserProfile;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.EntityType;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.MessageEntity;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives {@link LanXatTelegramBot#onUpdateReceived} with simulated users and reports throughput and latencies,
+ * from the update to the bot's answer (for inline queries, from the keystroke that got the answer,
+ * so the debounce wait is included, as users see it).
+ *
+ * Users type inline queries a key at a time, send messages to translate and commands, with pauses in between.
+ * Everything around the bot is simulated: the translation provider ({@link StubTranslationService}),
+ * the repositories, and Telegram (requests are captured and take a while to complete).
+ *
+ * Run with: mvn -P benchmarks test-compile exec:exec@load-test -Dload.args="--users=500 --duration-seconds=60"
+ * Options (with their defaults) are in {@link #main}.
+ */
+public class LoadTest {
+
+    private static final List<String> WORDS = List.of(
+            "hello", "how", "are", "you", "today", "where", "is", "the", "station", "I", "would", "like",
+            "a", "coffee", "please", "thanks", "see", "tomorrow", "what", "time", "it", "nice", "to", "meet");
+
+    private final Map<String, String> options;
+    private final ScheduledExecutorService scheduler;
+
+    private final InMemorySearchRepository searchRepository = new InMemorySearchRepository();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private InlineAnswerCache answerCache;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder keystrokes = new LongAdder();
+    private final LongAdder errorReplies = new LongAdder();
+
+    /** Inline queries waiting for an answer, by id */
+    private final Map<String, Long> pendingInline = new ConcurrentHashMap<>();
+    /** Last keystroke of each typed query; those left at the end got no answer */
+    private final Set<String> unansweredQueries = ConcurrentHashMap.newKeySet();
+    /** Messages waiting for a reply, by chat (matched in order; users rarely have two waiting, since they pause between actions) */
+    private final Map<Long, Queue<Sent>> pendingReplies = new ConcurrentHashMap<>();
+
+    private final LatencyRecorder inlineLatency = new LatencyRecorder();
+    private final LatencyRecorder messageLatency = new LatencyRecorder();
+    private final LatencyRecorder commandLatency = new LatencyRecorder();
+
+    private volatile boolean running = true;
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.scheduler = Executors.newScheduledThreadPool(getInt("driver-threads", 4),
+                new ThreadFactoryBuilder().setNameFormat("load-test-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Options, as --name=value (or name=value):
+     * users (200), duration-seconds (60), drain-seconds (5), think-ms (2000, mean pause between actions),
+     * keystroke-ms (180, mean gap between keystrokes), inline-ratio (0.7), message-ratio (0.25) (the rest are commands),
+     * detect-ratio (0.5, users whose configs detect the language), latency-ms (150, median provider latency),
+     * latency-sigma (0.5), error-rate (0.01), telegram-latency-ms (30), telegram-threads (30, see
+     * {@link TelegramSender.Config#threads}), dispatcher (striped or virtual),
+     * stripes (2 per CPU), telegram-limits (false: the sender doesn't limit the rate unless this is true).
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(parts[0], parts.length > 1 ? parts[1] : "true");
+        }
+
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws InterruptedException {
+
+        final PrintStream out = System.out;
+
+        final LanXatTelegramBot bot = buildBot();
+
+        final int users = getInt("users", 200);
+        final Duration duration = Duration.ofSeconds(getInt("duration-seconds", 60));
+
+        out.println("Load test: " + options);
+
+        // The bot logs every update; that would be most of the work here (the report goes to the original output)
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+
+        final long start = System.nanoTime();
+        for (long userId = 1; userId <= users; userId++) {
+            final long id = userId;
+            scheduler.schedule(() -> nextAction(bot, id), randomMillis(getInt("think-ms", 2000)), TimeUnit.MILLISECONDS);
+        }
+
+        for (long second = 1; second <= duration.toSeconds(); second++) {
+            Thread.sleep(1000);
+            if (second % 10 == 0) out.println(second + " s: " + updates.sum() + " updates, " + getAnswers() + " answers");
+        }
+
+        running = false;
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        Thread.sleep(TimeUnit.SECONDS.toMillis(getInt("drain-seconds", 5)));
+
+        out.println();
+        out.printf("Updates     %7d (%7.1f/s), keystrokes %d%n", updates.sum(), updates.sum() / seconds, keystrokes.sum());
+        out.println("Inline      " + inlineLatency.report(seconds));
+        out.println("Message     " + messageLatency.report(seconds));
+        out.println("Command     " + commandLatency.report(seconds));
+        out.println("Typed queries without answer: " + unansweredQueries.size()
+                + ", error replies: " + errorReplies.sum()
+                + ", searches saved: " + searchRepository.getSearches()
+                + ", answer cache: " + answerCache.getStats());
+
+        out.println();
+        out.println("Stage timers (count, mean, max in ms):");
+        registry.getMeters().stream()
+                .filter(meter -> meter instanceof Timer)
+                .map(meter -> (Timer) meter)
+                .sorted((a, b) -> a.getId().toString().compareTo(b.getId().toString()))
+                .forEach(timer -> out.printf("  %-70s %7d %9.1f %9.1f%n",
+                        timer.getId().getName() + timer.getId().getTags(), timer.count(),
+                        timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS)));
+    }
+
+    private LanXatTelegramBot buildBot() {
+
+        final InMemoryUserProfileRepository profiles = new InMemoryUserProfileRepository();
+        final int users = getInt("users", 200);
+        final double detectRatio = getDouble("detect-ratio", 0.5);
+        for (long userId = 1; userId <= users; userId++) {
+            profiles.saveOrUpdate(buildProfile(userId, userId <= users * detectRatio));
+        }
+
+        final StubTranslationService translationService = new StubTranslationService(scheduler,
+                Duration.ofMillis(getInt("latency-ms", 150)), getDouble("latency-sigma", 0.5), getDouble("error-rate", 0.01));
+
+        answerCache = new InlineAnswerCache(10_000, Duration.ofMinutes(60), Duration.ofMinutes(5));
+
+        final TelegramSender.Config senderConfig = new TelegramSender.Config();
+        senderConfig.threads = getInt("telegram-threads", senderConfig.threads);
+        if (!Boolean.parseBoolean(options.getOrDefault("telegram-limits", "false"))) {
+            senderConfig.perChatBurst = Integer.MAX_VALUE;
+            senderConfig.globalPerSecond = Integer.MAX_VALUE;
+            senderConfig.maxQueuedPerChat = Integer.MAX_VALUE;
+            senderConfig.maxQueued = Integer.MAX_VALUE;
+        }
+
+        return new LanXatTelegramBot("load_test_bot", "token", translationService, profiles, searchRepository,
+                answerCache, buildDispatcher(), new HashedWheelTimer(Duration.ofMillis(10), 512),
+                new AdaptiveDebouncer.Config(), senderConfig, registry) {
+
+            /** Like the bot's HTTP client: each request holds one of its threads until Telegram answers */
+            private final ExecutorService telegramThreads = Executors.newFixedThreadPool(getOptions().getMaxThreads(),
+                    new ThreadFactoryBuilder().setNameFormat("telegram-%d").setDaemon(true).build());
+
+            /** Telegram stand-in: captures the answers and completes after a while */
+            @Override
+            public <T extends Serializable, Method extends BotApiMethod<T>> CompletableFuture<T> executeAsync(Method method) {
+                return CompletableFuture.supplyAsync(() -> {
+                    onSent(method);
+                    try {
+                        Thread.sleep(getInt("telegram-latency-ms", 30));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return null;
+                }, telegramThreads);
+            }
+        };
+    }
+
+    private UpdateDispatcher buildDispatcher() {
+        final String mode = options.getOrDefault("dispatcher", "striped");
+        if (mode.equals("virtual") && VirtualThreadUpdateDispatcher.isSupported()) {
+            return new VirtualThreadUpdateDispatcher(100);
+        }
+        if (mode.equals("virtual")) System.out.println("Virtual threads not supported, using striped dispatcher");
+        return new StripedUpdateDispatcher(getInt("stripes", Runtime.getRuntime().availableProcessors() * 2), 10_000);
+    }
+
+    private static UserProfile buildProfile(long userId, boolean detect) {
+        final UserProfile profile = new UserProfile();
+        profile.setId(userId);
+        profile.setEnabled(true);
+        profile.setLangConfigs(new HashMap<>(Map.of(
+                "inline", new LangConfig(detect ? List.of("en", "es") : null, "en", "es"),
+                "bot", new LangConfig(detect ? List.of() : null, "en", "ru"))));
+        return profile;
+    }
+
+    private void nextAction(LanXatTelegramBot bot, long userId) {
+
+        if (!running) return;
+
+        final double action = ThreadLocalRandom.current().nextDouble();
+        final double inlineRatio = getDouble("inline-ratio", 0.7);
+        final double messageRatio = getDouble("message-ratio", 0.25);
+
+        if (action < inlineRatio) {
+            final String query = randomSentence();
+            typeInlineQuery(bot, userId, query, 1);
+            return; // The next action is scheduled when the query is typed
+        }
+
+        if (action < inlineRatio + messageRatio) {
+            sendMessage(bot, userId, randomSentence(), false);
+        } else {
+            sendMessage(bot, userId, ThreadLocalRandom.current().nextBoolean() ? "/langconfig" : "/start", true);
+        }
+
+        scheduleNextAction(bot, userId);
+    }
+
+    /** Sends the query up to the given length, and schedules the next keystroke */
+    private void typeInlineQuery(LanXatTelegramBot bot, long userId, String query, int length) {
+
+        if (!running) return;
+
+        final String id = String.valueOf(ids.incrementAndGet());
+        final InlineQuery inlineQuery = new InlineQuery();
+        inlineQuery.setId(id);
+        inlineQuery.setFrom(new User(userId, "User " + userId, false));
+        inlineQuery.setQuery(query.substring(0, length));
+
+        final Update update = new Update();
+        update.setInlineQuery(inlineQuery);
+
+        keystrokes.increment();
+        if (length >= 2) pendingInline.put(id, System.nanoTime()); // Shorter queries are ignored by the bot
+        if (length == query.length()) unansweredQueries.add(id);
+        deliver(bot, update);
+
+        if (length < query.length()) {
+            scheduler.schedule(() -> typeInlineQuery(bot, userId, query, length + 1),
+                    randomMillis(getInt("keystroke-ms", 180)), TimeUnit.MILLISECONDS);
+        } else {
+            scheduleNextAction(bot, userId);
+        }
+    }
+
+    private void sendMessage(LanXatTelegramBot bot, long userId, String text, boolean command) {
+
+        final Message message = new Message();
+        message.setMessageId((int) ids.incrementAndGet());
+        message.setFrom(new User(userId, "User " + userId, false));
+        message.setChat(new Chat(userId, "private"));
+        message.setText(text);
+        if (command) message.setEntities(List.of(new MessageEntity(EntityType.BOTCOMMAND, 0, text.length())));
+
+        final Update update = new Update();
+        update.setMessage(message);
+
+        pendingReplies.computeIfAbsent(userId, id -> new ConcurrentLinkedQueue<>()).add(new Sent(System.nanoTime(), command));
+        deliver(bot, update);
+    }
+
+    private void deliver(LanXatTelegramBot bot, Update update) {
+        updates.increment();
+        bot.onUpdateReceived(update);
+    }
+
+    private void scheduleNextAction(LanXatTelegramBot bot, long userId) {
+        scheduler.schedule(() -> nextAction(bot, userId), randomMillis(getInt("think-ms", 2000)), TimeUnit.MILLISECONDS);
+    }
+
+    private void onSent(BotApiMethod<?> method) {
+
+        final long now = System.nanoTime();
+
+        if (method instanceof AnswerInlineQuery) {
+            final String id = ((AnswerInlineQuery) method).getInlineQueryId();
+            final Long sent = pendingInline.remove(id);
+            if (sent != null) inlineLatency.record(now - sent);
+            unansweredQueries.remove(id);
+
+        } else if (method instanceof SendMessage) {
+            final SendMessage sendMessage = (SendMessage) method;
+            if (sendMessage.getText().startsWith("There was an error")) errorReplies.increment();
+            final Queue<Sent> pending = pendingReplies.get(Long.parseLong(sendMessage.getChatId()));
+            final Sent sent = pending == null ? null : pending.poll();
+            if (sent != null) (sent.command ? commandLatency : messageLatency).record(now - sent.nanos);
+        }
+    }
+
+    private long getAnswers() {
+        return inlineLatency.getCount() + messageLatency.getCount() + commandLatency.getCount();
+    }
+
+    private String randomSentence() {
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final StringBuilder sentence = new StringBuilder();
+        final int words = 2 + random.nextInt(6);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sentence.append(' ');
+            sentence.append(WORDS.get(random.nextInt(WORDS.size())));
+        }
+        if (random.nextDouble() < 0.3) sentence.append('?'); // Ends a sentence, so it's translated right away
+        return sentence.toString();
+    }
+
+    /** Exponential, with the given mean */
+    private static long randomMillis(double mean) {
+        return (long) (-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+    }
+
+    private int getInt(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private double getDouble(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    private static class Sent {
+
+        final long nanos;
+        final boolean command;
+
+        Sent(long nanos, boolean command) {
+            this.nanos = nanos;
+            this.command = command;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.codethen.telegram.lanxatbot.loadtest;
+
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Translation provider stand-in. Calls take a log-normal time (so there's a long tail, like real APIs)
+ * and fail with the given probability. Nothing waits for the calls: they're completed by a scheduler.
+ */
+class StubTranslationService implements TranslationService {
+
+    private final ScheduledExecutorService scheduler;
+    private final Duration medianLatency;
+    private final double latencySigma;
+    private final double errorRate;
+
+    StubTranslationService(ScheduledExecutorService scheduler, Duration medianLatency, double latencySigma, double errorRate) {
+        this.scheduler = scheduler;
+        this.medianLatency = medianLatency;
+        this.latencySigma = latencySigma;
+        this.errorRate = errorRate;
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return Futures.join(detectAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+        return Futures.thenCompose(langConfigToUseAsync(request), langConfig -> respond(() -> {
+            final TranslationData result = new TranslationData();
+            result.text = "[" + langConfig.getTo() + "] " + request.text;
+            result.langConfig = langConfig;
+            return result;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return respond(() -> new DetectResponse(List.of(
+                request.possibleLangs == null || request.possibleLangs.isEmpty() ? "en" : request.possibleLangs.get(0))));
+    }
+
+    private <T> CompletableFuture<T> respond(Supplier<T> response) {
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long latencyNanos = (long) (medianLatency.toNanos() * Math.exp(latencySigma * random.nextGaussian()));
+        final boolean fail = random.nextDouble() < errorRate;
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final var scheduled = scheduler.schedule(() -> {
+            if (fail) {
+                result.completeExceptionally(new TranslationException("Simulated provider error"));
+            } else {
+                result.complete(response.get());
+            }
+        }, latencyNanos, TimeUnit.NANOSECONDS);
+
+        result.whenComplete((r, e) -> { if (result.isCancelled()) scheduled.cancel(false); });
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package com.codethen.telegram.lanxatbot.profile;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LangConfig} methods used while translating (descriptions are logged and shown in results).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LangConfigBenchmark {
+
+    private final LangConfig fixed = new LangConfig(null, "en", "ru");
+    private final LangConfig detect = new LangConfig(List.of("es", "en", "ru"), "en", "ru");
+    private final LangConfig detectAny = new LangConfig(List.of(), "en", "ru");
+
+    @Benchmark
+    public String shortDescriptionFixed() {
+        return fixed.shortDescription();
+    }
+
+    @Benchmark
+    public String shortDescriptionDetect() {
+        return detect.shortDescription();
+    }
+
+    @Benchmark
+    public String shortDescriptionDetectAny() {
+        return detectAny.shortDescription();
+    }
+
+    @Benchmark
+    public LangConfig reverse() {
+        return fixed.reverse();
+    }
+}
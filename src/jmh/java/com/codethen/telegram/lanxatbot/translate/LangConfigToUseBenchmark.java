@@ -0,0 +1,66 @@
+package com.codethen.telegram.lanxatbot.translate;
+
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TranslationService#langConfigToUse} with a provider that answers instantly,
+ * so only the bot's own work is measured (detect request, deciding the target language).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LangConfigToUseBenchmark {
+
+    private final TranslationService service = new TranslationService() {
+
+        private final DetectResponse detected = new DetectResponse(List.of("ru"));
+
+        @Override
+        public TranslationData translate(TranslationData request) {
+            return request;
+        }
+
+        @Override
+        public DetectResponse detect(DetectRequest request) {
+            return detected;
+        }
+    };
+
+    private TranslationData fixed;
+    private TranslationData detect;
+
+    @Setup
+    public void setup() {
+        fixed = request(new LangConfig(null, "en", "ru"));
+        detect = request(new LangConfig(List.of("en", "ru"), "en", "ru"));
+    }
+
+    private static TranslationData request(LangConfig langConfig) {
+        final TranslationData request = new TranslationData();
+        request.text = "How are you doing today?";
+        request.langConfig = langConfig;
+        return request;
+    }
+
+    @Benchmark
+    public LangConfig langConfigToUseFixed() {
+        return service.langConfigToUse(fixed);
+    }
+
+    @Benchmark
+    public LangConfig langConfigToUseDetect() {
+        return service.langConfigToUse(detect);
+    }
+
+    @Benchmark
+    public LangConfig langConfigToUseAsyncDetect() {
+        return service.langConfigToUseAsync(detect).join();
+    }
+}
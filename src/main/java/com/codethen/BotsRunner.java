@@ -1,8 +1,12 @@
 package com.codethen;
 
+import com.codethen.telegram.BotSettings;
 import com.codethen.telegram.RegisterBots;
+import com.codethen.telegram.WebhookUpdateHandler;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -12,20 +16,29 @@ public class BotsRunner implements CommandLineRunner {
     private final String databaseName;
     private final String lanxatToken;
     private final String lanxatName;
+    private final BotSettings settings;
+    private final WebhookUpdateHandler webhookUpdateHandler;
+    private final MeterRegistry meterRegistry;
 
     public BotsRunner(
             @Value("${mongo.url}") String connectionString,
             @Value("${mongo.database}") String databaseName,
             @Value("${telegram.lanxat.token}") String lanxatToken,
-            @Value("${telegram.lanxat.name}") String lanxatName) {
+            @Value("${telegram.lanxat.name}") String lanxatName,
+            Environment environment,
+            WebhookUpdateHandler webhookUpdateHandler,
+            MeterRegistry meterRegistry) {
         this.connectionString = connectionString;
         this.databaseName = databaseName;
         this.lanxatToken = lanxatToken;
         this.lanxatName = lanxatName;
+        this.settings = new BotSettings(environment::getProperty);
+        this.webhookUpdateHandler = webhookUpdateHandler;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
     public void run(String... args) throws Exception {
-        RegisterBots.registerBots(connectionString, databaseName, lanxatName, lanxatToken);
+        RegisterBots.registerBots(connectionString, databaseName, lanxatName, lanxatToken, settings, webhookUpdateHandler, meterRegistry);
     }
 }
@@ -0,0 +1,56 @@
+package com.codethen.api;
+
+import com.codethen.telegram.WebhookUpdateHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Receives the updates that Telegram sends when the bot is in webhook mode.
+ * Telegram includes the secret token set with the webhook in a header, so we know the request comes from Telegram.
+ * See: https://core.telegram.org/bots/api#setwebhook
+ */
+@RestController
+public class TelegramWebhookController {
+
+    private static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final WebhookUpdateHandler updateHandler;
+    private final byte[] secretToken;
+
+    public TelegramWebhookController(
+            WebhookUpdateHandler updateHandler,
+            @Value("${telegram.lanxat.webhook.secret-token:}") String secretToken) {
+        this.updateHandler = updateHandler;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Answers right away; the update is processed by the bot's dispatcher */
+    @PostMapping("${telegram.lanxat.webhook.path:/telegram/webhook}")
+    public Mono<ResponseEntity<Void>> receiveUpdate(
+            @RequestHeader(name = SECRET_TOKEN_HEADER, required = false) String token,
+            @RequestBody Update update) {
+
+        if (secretToken.length == 0 || token == null
+                || !MessageDigest.isEqual(secretToken, token.getBytes(StandardCharsets.UTF_8))) {
+            System.out.println("Rejected webhook request with a wrong secret token");
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+
+        if (!updateHandler.handle(update)) {
+            // Telegram will retry later
+            return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+
+        return Mono.just(ResponseEntity.ok().build());
+    }
+}
@@ -0,0 +1,220 @@
+package com.codethen.detect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Local language detector based on character n-grams (1 to 3 letters), so common languages
+ * can be detected in microseconds without calling a translation API.
+ *
+ * The profile of each language is built from a sample text in the resource {@code langdetect/<lang>.txt}.
+ * A text is scored against each profile with a naive Bayes model, and the result includes a confidence,
+ * so callers can fall back to a remote detector when the text is short or ambiguous.
+ */
+public class NgramLanguageDetector {
+
+    public static final List<String> DEFAULT_LANGS = List.of("en", "es", "ca", "fr", "it", "pt", "de", "ru", "uk");
+
+    private static final int MAX_NGRAM = 3;
+
+    /** Below this amount of letters there's not enough information to detect anything */
+    private static final int MIN_LETTERS = 3;
+
+    /**
+     * Minimum fraction of the text n-grams that must appear in the best profile.
+     * Helps to detect that the text is in a language we don't have a profile for.
+     */
+    private static final double MIN_KNOWN_NGRAMS = 0.6;
+
+    private final Map<String, Profile> profiles = new HashMap<>();
+
+    /** Number of distinct n-grams of each length in all profiles, for smoothing */
+    private final int[] vocabularySize = new int[MAX_NGRAM + 1];
+
+    public NgramLanguageDetector() {
+        this(DEFAULT_LANGS);
+    }
+
+    public NgramLanguageDetector(Collection<String> langs) {
+
+        final List<Map<String, Integer>> allNgrams = new ArrayList<>();
+        for (int n = 0; n <= MAX_NGRAM; n++) allNgrams.add(new HashMap<>());
+
+        for (String lang : langs) {
+            final Profile profile = new Profile(lang);
+            forEachNgram(normalize(readSample(lang)), (ngram) -> {
+                profile.add(ngram);
+                allNgrams.get(ngram.length()).merge(ngram, 1, Integer::sum);
+            });
+            profiles.put(lang, profile);
+        }
+
+        for (int n = 1; n <= MAX_NGRAM; n++) vocabularySize[n] = allNgrams.get(n).size();
+    }
+
+    public boolean supports(String lang) {
+        return profiles.containsKey(lang);
+    }
+
+    /**
+     * Detects the language of the text among the candidates.
+     * The confidence is 0 if any of them is not supported, or if there are no candidates
+     * (the text could be in any language, and a language without profile is usually taken for a similar one,
+     * e.g. Dutch for German).
+     */
+    public Detection detect(String text, Collection<String> candidates) {
+
+        final String normalized = normalize(text);
+        if (countLetters(normalized) < MIN_LETTERS) return Detection.UNKNOWN;
+
+        if (candidates == null || candidates.isEmpty()) return Detection.UNKNOWN;
+
+        final List<Profile> langProfiles = new ArrayList<>();
+        for (String lang : candidates) {
+            final Profile profile = profiles.get(lang);
+            if (profile == null) return Detection.UNKNOWN;
+            langProfiles.add(profile);
+        }
+
+        final List<String> ngrams = new ArrayList<>();
+        forEachNgram(normalized, ngrams::add);
+
+        // Log-likelihood of the text for each language
+        Profile best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        final double[] scores = new double[langProfiles.size()];
+        int i = 0;
+        for (Profile profile : langProfiles) {
+            double score = 0;
+            for (String ngram : ngrams) score += profile.logProbability(ngram, vocabularySize);
+            scores[i++] = score;
+            if (score > bestScore) {
+                bestScore = score;
+                best = profile;
+            }
+        }
+
+        if (best == null) return Detection.UNKNOWN;
+
+        // Posterior probability of the best language, assuming all languages are equally likely
+        double sum = 0;
+        for (double score : scores) sum += Math.exp(score - bestScore);
+        double confidence = 1 / sum;
+
+        if (best.knownFraction(ngrams) < MIN_KNOWN_NGRAMS) {
+            confidence = 0;
+        }
+
+        return new Detection(best.lang, confidence);
+    }
+
+    private static String readSample(String lang) {
+        final String resource = "/langdetect/" + lang + ".txt";
+        try (InputStream in = NgramLanguageDetector.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IllegalArgumentException("Missing language sample: " + resource);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read language sample: " + resource, e);
+        }
+    }
+
+    /** Lower case letters, and a single space in place of anything else (words are separated by spaces). */
+    private static String normalize(String text) {
+
+        final StringBuilder sb = new StringBuilder(text.length() + 2).append(' ');
+        final String lowerCase = text.toLowerCase(Locale.ROOT);
+
+        for (int i = 0; i < lowerCase.length(); i++) {
+            final char c = lowerCase.charAt(i);
+            if (Character.isLetter(c) || c == '\'') {
+                sb.append(c);
+            } else if (sb.charAt(sb.length() - 1) != ' ') {
+                sb.append(' ');
+            }
+        }
+
+        if (sb.charAt(sb.length() - 1) != ' ') sb.append(' ');
+        return sb.toString();
+    }
+
+    private static int countLetters(String normalized) {
+        int count = 0;
+        for (int i = 0; i < normalized.length(); i++) {
+            if (Character.isLetter(normalized.charAt(i))) count++;
+        }
+        return count;
+    }
+
+    /** N-grams that are just a space are skipped, they don't say anything about the language */
+    private static void forEachNgram(String normalized, Consumer<String> action) {
+        for (int n = 1; n <= MAX_NGRAM; n++) {
+            for (int i = 0; i + n <= normalized.length(); i++) {
+                final String ngram = normalized.substring(i, i + n);
+                if (!ngram.isBlank()) action.accept(ngram);
+            }
+        }
+    }
+
+    public static class Detection {
+
+        static final Detection UNKNOWN = new Detection(null, 0);
+
+        /** Detected language, or null if there wasn't enough information */
+        public final String lang;
+        /** Between 0 and 1 */
+        public final double confidence;
+
+        Detection(String lang, double confidence) {
+            this.lang = lang;
+            this.confidence = confidence;
+        }
+
+        @Override
+        public String toString() {
+            return lang + " (" + String.format(Locale.ROOT, "%.3f", confidence) + ")";
+        }
+    }
+
+    private static class Profile {
+
+        final String lang;
+        final Map<String, Integer> counts = new HashMap<>();
+        final int[] totals = new int[MAX_NGRAM + 1];
+
+        Profile(String lang) {
+            this.lang = lang;
+        }
+
+        void add(String ngram) {
+            counts.merge(ngram, 1, Integer::sum);
+            totals[ngram.length()]++;
+        }
+
+        /** With add-one smoothing, so unseen n-grams don't make the probability 0 */
+        double logProbability(String ngram, int[] vocabularySize) {
+            final int n = ngram.length();
+            final int count = counts.getOrDefault(ngram, 0);
+            return Math.log((count + 1.0) / (totals[n] + vocabularySize[n] + 1.0));
+        }
+
+        double knownFraction(List<String> ngrams) {
+            int known = 0;
+            int total = 0;
+            for (String ngram : ngrams) {
+                if (ngram.length() < MAX_NGRAM) continue;
+                total++;
+                if (counts.containsKey(ngram)) known++;
+            }
+            return total == 0 ? 0 : (double) known / total;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.codethen.google;
+
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.translate.v3.TranslateTextRequest;
+import com.google.cloud.translate.v3.TranslateTextResponse;
+import com.google.cloud.translate.v3.Translation;
+import com.google.cloud.translate.v3.TranslationServiceClient;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups texts to translate with the same source and target languages (even from different users)
+ * and sends them in a single {@link TranslateTextRequest}, since the API accepts many contents per request.
+ *
+ * A batch is sent when the window since its first text expires, or earlier if it reaches
+ * the maximum number of texts or characters.
+ */
+class GoogleTranslateBatcher {
+
+    private final TranslationServiceClient client;
+    private final String parent;
+    private final long windowMillis;
+    private final int maxTexts;
+    private final int maxChars;
+
+    private final ScheduledExecutorService timer;
+
+    /** Batches waiting to be sent, by {@link #batchKey} */
+    private final Map<String, Batch> pending = new HashMap<>();
+
+    GoogleTranslateBatcher(TranslationServiceClient client, String parent, Duration window, int maxTexts, int maxChars) {
+        this.client = client;
+        this.parent = parent;
+        this.windowMillis = window.toMillis();
+        this.maxTexts = maxTexts;
+        this.maxChars = maxChars;
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("google-translate-batcher-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Adds the text to the batch for the given languages.
+     * The future completes when the response for the whole batch arrives.
+     */
+    CompletableFuture<Translation> submit(String from, String to, String text) {
+
+        final BatchItem item = new BatchItem(text);
+        final Batch toSend;
+
+        synchronized (pending) {
+            final String key = batchKey(from, to);
+            Batch batch = pending.get(key);
+
+            if (batch != null && batch.chars + text.length() > maxChars) {
+                // This text doesn't fit, so the current batch goes now and a new one starts
+                pending.remove(key);
+                batch.cancelTimer();
+                sendLater(batch);
+                batch = null;
+            }
+
+            if (batch == null) {
+                batch = new Batch(key, from, to);
+                pending.put(key, batch);
+                final Batch scheduled = batch;
+                batch.timer = timer.schedule(() -> sendIfPending(scheduled), windowMillis, TimeUnit.MILLISECONDS);
+            }
+
+            batch.add(item);
+
+            if (batch.items.size() >= maxTexts || batch.chars >= maxChars) {
+                pending.remove(key);
+                batch.cancelTimer();
+                toSend = batch;
+            } else {
+                toSend = null;
+            }
+        }
+
+        if (toSend != null) send(toSend);
+
+        return item.future;
+    }
+
+    private void sendIfPending(Batch batch) {
+        synchronized (pending) {
+            if (!pending.remove(batch.key, batch)) return; // Already sent because it was full
+        }
+        send(batch);
+    }
+
+    private void sendLater(Batch batch) {
+        timer.execute(() -> send(batch));
+    }
+
+    private void send(Batch batch) {
+
+        // Texts whose callers are gone (e.g. cancelled) are not sent
+        final List<BatchItem> items = batch.items.stream().filter(i -> !i.future.isDone()).toList();
+        if (items.isEmpty()) return;
+
+        final ApiFuture<TranslateTextResponse> call;
+        try {
+            final TranslateTextRequest.Builder req = TranslateTextRequest.newBuilder()
+                    .setParent(parent)
+                    .setMimeType("text/plain")
+                    .setTargetLanguageCode(batch.to);
+
+            if (batch.from != null) req.setSourceLanguageCode(batch.from);
+
+            items.forEach(i -> req.addContents(i.text));
+
+            System.out.println("Sending batch of " + items.size() + " texts " + batch.key);
+            call = client.translateTextCallable().futureCall(req.build());
+        } catch (RuntimeException e) {
+            // E.g. the client is closed. Otherwise the callers would wait forever (nobody sees errors in the timer thread).
+            final TranslationException error = new TranslationException("Could not call Google Translate API", e);
+            items.forEach(i -> i.future.completeExceptionally(error));
+            return;
+        }
+
+        ApiFutures.addCallback(call, new ApiFutureCallback<>() {
+
+            @Override
+            public void onSuccess(TranslateTextResponse response) {
+                final List<Translation> translations = response.getTranslationsList();
+                for (int i = 0; i < items.size(); i++) {
+                    if (i < translations.size()) {
+                        items.get(i).future.complete(translations.get(i));
+                    } else {
+                        items.get(i).future.completeExceptionally(
+                                new TranslationException("Could not find translation for text: " + items.get(i).text));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                final TranslationException e = new TranslationException("Unexpected error calling Google Translate API", t);
+                items.forEach(i -> i.future.completeExceptionally(e));
+            }
+
+        }, MoreExecutors.directExecutor());
+    }
+
+    /** When from is null, the source language is detected by the API */
+    private static String batchKey(String from, String to) {
+        return (from == null ? "auto" : from) + "-" + to;
+    }
+
+    private static class Batch {
+
+        final String key;
+        final String from;
+        final String to;
+        final List<BatchItem> items = new ArrayList<>();
+        int chars;
+        ScheduledFuture<?> timer;
+
+        Batch(String key, String from, String to) {
+            this.key = key;
+            this.from = from;
+            this.to = to;
+        }
+
+        void add(BatchItem item) {
+            items.add(item);
+            chars += item.text.length();
+        }
+
+        void cancelTimer() {
+            if (timer != null) timer.cancel(false);
+        }
+    }
+
+    private static class BatchItem {
+
+        final String text;
+        final CompletableFuture<Translation> future = new CompletableFuture<>();
+
+        BatchItem(String text) {
+            this.text = text;
+        }
+    }
+}
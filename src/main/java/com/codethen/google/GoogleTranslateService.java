@@ -1,21 +1,27 @@
 package com.codethen.google;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-import com.codethen.telegram.lanxatbot.exception.LanXatException;
 import com.codethen.telegram.lanxatbot.profile.LangConfig;
 import com.codethen.telegram.lanxatbot.translate.DetectRequest;
 import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
 import com.codethen.telegram.lanxatbot.translate.TranslationData;
 import com.codethen.telegram.lanxatbot.translate.TranslationException;
 import com.codethen.telegram.lanxatbot.translate.TranslationService;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.translate.v3.DetectLanguageRequest;
+import com.google.cloud.translate.v3.DetectLanguageResponse;
 import com.google.cloud.translate.v3.DetectedLanguage;
 import com.google.cloud.translate.v3.LocationName;
-import com.google.cloud.translate.v3.TranslateTextRequest;
-import com.google.cloud.translate.v3.TranslateTextResponse;
 import com.google.cloud.translate.v3.Translation;
 import com.google.cloud.translate.v3.TranslationServiceClient;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * This service needs a key to work.
@@ -27,46 +33,102 @@ public class GoogleTranslateService implements TranslationService {
     private static final String PROJECT_ID = "yandex-terraform";
 
     private final TranslationServiceClient client;
+    private final GoogleTranslateBatcher batcher;
 
     public GoogleTranslateService() {
+        this(Duration.ofMillis(5), 128, 30_000);
+    }
+
+    /**
+     * Translations with the same languages are sent together in one request.
+     * See {@link GoogleTranslateBatcher} for the meaning of the parameters.
+     */
+    public GoogleTranslateService(Duration batchWindow, int batchMaxTexts, int batchMaxChars) {
         try {
             this.client = TranslationServiceClient.create();
         } catch (IOException e) {
             throw new RuntimeException("Could not create Google Translate client", e);
         }
+        final String parent = LocationName.of(PROJECT_ID, "global").toString();
+        this.batcher = new GoogleTranslateBatcher(client, parent, batchWindow, batchMaxTexts, batchMaxChars);
     }
 
     @Override
     public TranslationData translate(TranslationData request) throws TranslationException {
-        LocationName parent = LocationName.of(PROJECT_ID, "global");
+        return Futures.join(translateAsync(request));
+    }
 
-        LangConfig langConfigToUse = langConfigToUse(request);
-        System.out.println("Translating " + langConfigToUse.shortDescription() + " : '" + request.text + "'");
-
-        TranslateTextRequest req =
-                TranslateTextRequest.newBuilder()
-                        .setParent(parent.toString())
-                        .setMimeType("text/plain")
-                        .setSourceLanguageCode(langConfigToUse.getFrom())
-                        .setTargetLanguageCode(langConfigToUse.getTo())
-                        .addContents(request.text)
-                        .build();
-
-        TranslateTextResponse response = client.translateText(req);
-
-        // Display the translation for each input text provided
-        for (Translation translation : response.getTranslationsList()) {
-            final TranslationData result = new TranslationData();
-            result.text = translation.getTranslatedText();
-            result.langConfig = langConfigToUse;
-            return result;
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+
+        if (request.langConfig.shouldDetectLang()) {
+            return detectAndTranslateAsync(request);
         }
 
-        throw new LanXatException("Could not find translation for text: " + request.text);
+        return translateAsync(request.text, request.langConfig);
+    }
+
+    /**
+     * When no source language is given, the API detects it and returns it with the translation,
+     * so we translate to {@link LangConfig#getTo()} directly, without calling {@link #detect(DetectRequest)}.
+     * Only when the detected language is already the target one (see {@link #decideLangTo}),
+     * a second call translates to {@link LangConfig#getFrom()}.
+     */
+    private CompletableFuture<TranslationData> detectAndTranslateAsync(TranslationData request) {
+
+        final LangConfig langConfig = request.langConfig;
+        System.out.println("Detecting and translating " + langConfig.shortDescription() + " : '" + request.text + "'");
+
+        final CompletableFuture<Translation> detectingTranslation = batcher.submit(null, langConfig.getTo(), request.text);
+
+        return Futures.thenCompose(detectingTranslation, translation -> {
+
+            final String detected = translation.getDetectedLanguageCode();
+            if (!isLanguage(detected)) {
+                // Failing, so the result is not cached nor stored with an unknown source language
+                return CompletableFuture.failedFuture(new TranslationException("Could not detect the language of: " + request.text));
+            }
+            final String langTo = decideLangTo(new DetectResponse(List.of(detected)), langConfig);
+            System.out.println("Detected language: " + detected);
+
+            if (langTo.equals(langConfig.getTo())) {
+                return CompletableFuture.completedFuture(
+                        buildResult(translation, new LangConfig(null, detected, langTo)));
+            } else {
+                return translateAsync(request.text, new LangConfig(null, detected, langTo));
+            }
+        });
+    }
+
+    private CompletableFuture<TranslationData> translateAsync(String text, LangConfig langConfigToUse) {
+
+        System.out.println("Translating " + langConfigToUse.shortDescription() + " : '" + text + "'");
+
+        final CompletableFuture<Translation> translation =
+                batcher.submit(langConfigToUse.getFrom(), langConfigToUse.getTo(), text);
+
+        return Futures.propagateCancel(translation.thenApply(t -> buildResult(t, langConfigToUse)), translation);
+    }
+
+    /** Google returns an empty code (or "und") when it can't detect the language */
+    private static boolean isLanguage(String code) {
+        return code != null && !code.isEmpty() && !code.equals("und");
+    }
+
+    private static TranslationData buildResult(Translation translation, LangConfig langConfigUsed) {
+        final TranslationData result = new TranslationData();
+        result.text = translation.getTranslatedText();
+        result.langConfig = langConfigUsed;
+        return result;
     }
 
     @Override
     public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return Futures.join(detectAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
         LocationName parent = LocationName.of(PROJECT_ID, "global");
 
         var req = DetectLanguageRequest.newBuilder()
@@ -75,10 +137,41 @@ public class GoogleTranslateService implements TranslationService {
                 .setContent(request.text)
                 .build();
 
-        var response = client.detectLanguage(req);
+        final CompletableFuture<DetectLanguageResponse> detection =
+                toCompletableFuture(client.detectLanguageCallable().futureCall(req));
+
+        return Futures.propagateCancel(detection.thenApply(response -> {
+            var langs = response.getLanguagesList().stream().map(DetectedLanguage::getLanguageCode)
+                    .filter(GoogleTranslateService::isLanguage).toList();
+            System.out.println("Detected languages: " + langs);
+            if (langs.isEmpty()) throw new TranslationException("Could not detect the language of: " + request.text);
+            return new DetectResponse(langs);
+        }), detection);
+    }
+
+    /** Cancelling the returned future also cancels the API call. */
+    private static CompletableFuture<DetectLanguageResponse> toCompletableFuture(ApiFuture<DetectLanguageResponse> apiFuture) {
+
+        final CompletableFuture<DetectLanguageResponse> result = new CompletableFuture<>();
+
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<>() {
+
+            @Override
+            public void onSuccess(DetectLanguageResponse response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(new TranslationException("Unexpected error calling Google Translate API", t));
+            }
+
+        }, MoreExecutors.directExecutor());
+
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) apiFuture.cancel(true);
+        });
 
-        var langs = response.getLanguagesList().stream().map(DetectedLanguage::getLanguageCode).toList();
-        System.out.println("Detected languages: " + langs);
-        return new DetectResponse(langs);
+        return result;
     }
 }
@@ -0,0 +1,59 @@
+package com.codethen.metrics;
+
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times asynchronous calls in the timer with the given name and tags, plus an "outcome" tag:
+ * success, error or cancelled. Create it once, so the timers are not looked up on every call.
+ */
+public class OutcomeTimer {
+
+    private final MeterRegistry registry;
+    private final String name;
+    private final Tags tags;
+
+    // Registered when first used; a race just registers (and gets) the same timer twice
+    private volatile Timer success;
+    private volatile Timer error;
+    private volatile Timer cancelled;
+
+    public OutcomeTimer(MeterRegistry registry, String name, Tags tags) {
+        this.registry = registry;
+        this.name = name;
+        this.tags = tags;
+    }
+
+    /** Records the time until the future completes. Returns the same future. */
+    public <T> CompletableFuture<T> time(CompletableFuture<T> future) {
+        return time(future, System.nanoTime());
+    }
+
+    /** Like {@link #time(CompletableFuture)}, from the given {@link System#nanoTime()} */
+    public <T> CompletableFuture<T> time(CompletableFuture<T> future, long start) {
+
+        future.whenComplete((result, e) -> timerFor(e).record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+
+        return future;
+    }
+
+    private Timer timerFor(Throwable e) {
+
+        if (e == null) {
+            if (success == null) success = Timings.timer(registry, name, tags.and("outcome", "success"));
+            return success;
+        }
+        if (Futures.unwrap(e) instanceof CancellationException) {
+            if (cancelled == null) cancelled = Timings.timer(registry, name, tags.and("outcome", "cancelled"));
+            return cancelled;
+        }
+        if (error == null) error = Timings.timer(registry, name, tags.and("outcome", "error"));
+        return error;
+    }
+}
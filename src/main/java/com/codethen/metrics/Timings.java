@@ -0,0 +1,22 @@
+package com.codethen.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Helpers to time calls with Micrometer. Timers publish histograms, so percentiles
+ * can be computed (and aggregated across instances) in Prometheus.
+ */
+public final class Timings {
+
+    private Timings() {}
+
+    /** Timer with a histogram (timers with the same name must always have the same tag keys) */
+    public static Timer timer(MeterRegistry registry, String name, Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -1,5 +1,6 @@
 package com.codethen.profile;
 
+import com.codethen.metrics.Timings;
 import com.codethen.telegram.lanxatbot.exception.ProfileNotEnabledException;
 import com.codethen.telegram.lanxatbot.exception.ProfileNotExistsException;
 import com.codethen.telegram.lanxatbot.profile.UserProfile;
@@ -8,22 +9,36 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import org.jetbrains.annotations.NotNull;
 
 import java.time.Duration;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Caches the profiles of the internal repository for a few minutes.
+ * Loads are timed in "lanxat.profile.load", tagged with whether they were cached.
+ */
 public class CachedUserProfileRepository implements UserProfileRepository {
 
     private final LoadingCache<Long, UserProfile> repoCache;
     private final UserProfileRepository internalRepo;
+    private final Timer hitTimer;
+    private final Timer missTimer;
 
-    public CachedUserProfileRepository(UserProfileRepository internalRepo) {
+    public CachedUserProfileRepository(UserProfileRepository internalRepo, MeterRegistry registry) {
 
         this.internalRepo = internalRepo;
+        this.hitTimer = Timings.timer(registry, "lanxat.profile.load", Tags.of("cached", "true"));
+        this.missTimer = Timings.timer(registry, "lanxat.profile.load", Tags.of("cached", "false"));
 
         repoCache = CacheBuilder.newBuilder()
                 .expireAfterWrite(Duration.ofMinutes(5))
+                .recordStats()
                 .build(new CacheLoader<>() {
                     @NotNull
                     @Override
@@ -34,13 +49,23 @@ public class CachedUserProfileRepository implements UserProfileRepository {
                         return profile;
                     }
                 });
+
+        GuavaCacheMetrics.monitor(registry, repoCache, "profiles");
     }
 
     @Override
     public UserProfile getProfileById(Long userId) {
+        final long start = System.nanoTime();
         try {
             System.out.println("Loading profile, maybe from cache: " + userId);
-            return repoCache.get(userId);
+            final UserProfile cached = repoCache.getIfPresent(userId);
+            if (cached != null) {
+                hitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return cached;
+            }
+            final UserProfile loaded = repoCache.get(userId);
+            missTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return loaded;
         } catch (UncheckedExecutionException e) {
             throw (RuntimeException) e.getCause(); // TODO: Is this the ProfileNotExistsException I throw?
         } catch (ExecutionException e) {
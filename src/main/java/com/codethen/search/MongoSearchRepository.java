@@ -5,6 +5,8 @@ import com.codethen.telegram.lanxatbot.search.SearchRepository;
 import com.mongodb.reactivestreams.client.MongoClient;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 
+import java.util.concurrent.CompletableFuture;
+
 public class MongoSearchRepository implements SearchRepository {
 
     private static final String COLLECTION_NAME = "searches";
@@ -15,8 +17,9 @@ public class MongoSearchRepository implements SearchRepository {
         mongoTemplate = new ReactiveMongoTemplate(mongoClient, databaseName);
     }
 
+    /** Nothing blocks waiting for the insert. Cancelling the future cancels the subscription. */
     @Override
-    public void registerSearch(SearchEntry searchEntry) {
-        mongoTemplate.insert(searchEntry, COLLECTION_NAME).block();
+    public CompletableFuture<Void> registerSearch(SearchEntry searchEntry) {
+        return mongoTemplate.insert(searchEntry, COLLECTION_NAME).then().toFuture();
     }
 }
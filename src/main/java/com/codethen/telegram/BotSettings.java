@@ -0,0 +1,43 @@
+package com.codethen.telegram;
+
+import java.util.function.Function;
+
+/**
+ * Optional settings used when registering the bots, with the default given where they are read.
+ * Values come from the application properties when running with Spring Boot
+ * (see {@link com.codethen.BotsRunner}); otherwise all defaults are used.
+ */
+public class BotSettings {
+
+    private final Function<String, String> properties;
+
+    public BotSettings(Function<String, String> properties) {
+        this.properties = properties;
+    }
+
+    /** Settings where every value is the default one */
+    public static BotSettings defaults() {
+        return new BotSettings(key -> null);
+    }
+
+    public String getString(String key, String defaultValue) {
+        final String value = properties.apply(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return Integer.parseInt(getString(key, Integer.toString(defaultValue)));
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return Long.parseLong(getString(key, Long.toString(defaultValue)));
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        return Double.parseDouble(getString(key, Double.toString(defaultValue)));
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(key, Boolean.toString(defaultValue)));
+    }
+}
@@ -1,18 +1,56 @@
 package com.codethen.telegram;
 
+import com.codethen.detect.NgramLanguageDetector;
 import com.codethen.google.GoogleTranslateService;
 import com.codethen.profile.CachedUserProfileRepository;
 import com.codethen.profile.MongoUserProfileRepository;
 import com.codethen.search.MongoSearchRepository;
+import com.codethen.telegram.lanxatbot.AdaptiveDebouncer;
+import com.codethen.telegram.lanxatbot.HashedWheelTimer;
+import com.codethen.telegram.lanxatbot.InlineAnswerCache;
 import com.codethen.telegram.lanxatbot.LanXatTelegramBot;
+import com.codethen.telegram.lanxatbot.StripedUpdateDispatcher;
+import com.codethen.telegram.lanxatbot.UpdateDispatcher;
+import com.codethen.telegram.lanxatbot.TelegramSender;
+import com.codethen.telegram.lanxatbot.VirtualThreadUpdateDispatcher;
 import com.codethen.telegram.lanxatbot.profile.UserProfileRepository;
 import com.codethen.telegram.lanxatbot.search.SearchRepository;
+import com.codethen.telegram.lanxatbot.translate.TranslationRepository;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+import com.codethen.translate.AdaptiveConcurrencyLimit;
+import com.codethen.translate.CachedTranslationService;
+import com.codethen.translate.CircuitBreaker;
+import com.codethen.translate.CoalescingTranslationService;
+import com.codethen.translate.HedgingTranslationService;
+import com.codethen.translate.LocalDetectTranslationService;
+import com.codethen.translate.MappedFileTranslationRepository;
+import com.codethen.translate.MeteredTranslationService;
+import com.codethen.translate.MongoTranslationRepository;
+import com.codethen.translate.PersistentTranslationService;
+import com.codethen.translate.QuotaTranslationService;
+import com.codethen.translate.ResilientTranslationService;
+import com.codethen.translate.RoutingTranslationService;
+import com.codethen.translate.SegmentingTranslationService;
+import com.codethen.yandex.YandexApiFactory;
+import com.codethen.yandex.YandexTranslateService;
 import com.mongodb.reactivestreams.client.MongoClient;
 import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+
 public class RegisterBots {
 
     public static void main(String[] args) throws TelegramApiException {
@@ -26,10 +64,17 @@ public class RegisterBots {
         final String telegramBotName = getEnvChecked("telegram.bots.api.lanxat.name");
         final String telegramBotApiToken = getEnvChecked("telegram.bots.api.lanxat.token");
 
-        registerBots(connectionString, databaseName, telegramBotName, telegramBotApiToken);
+        registerBots(connectionString, databaseName, telegramBotName, telegramBotApiToken, BotSettings.defaults(), null,
+                new SimpleMeterRegistry());
     }
 
-    public static void registerBots(String connectionString, String databaseName, String botName, String lanxatApiToken) throws TelegramApiException {
+    /**
+     * @param webhookUpdateHandler receives the updates from the webhook endpoint; needed in webhook mode
+     * @param registry where metrics are registered (exposed by the actuator when running in Spring Boot)
+     */
+    public static void registerBots(String connectionString, String databaseName, String botName, String lanxatApiToken,
+                                    BotSettings settings, @Nullable WebhookUpdateHandler webhookUpdateHandler,
+                                    MeterRegistry registry) throws TelegramApiException {
 
         System.out.println("Registering bots...");
 
@@ -39,21 +84,286 @@ public class RegisterBots {
 
         final UserProfileRepository userProfileRepository =
                 new CachedUserProfileRepository(new MongoUserProfileRepository(
-                    mongoClient, databaseName));
+                    mongoClient, databaseName), registry);
 
         final SearchRepository searchRepository =
             new MongoSearchRepository(mongoClient, databaseName);
 
-        var session = api.registerBot(
-                new LanXatTelegramBot(
-                        botName,
-                        lanxatApiToken,
-                        //new YandexTranslateService(YandexApiFactory.build()),
-                        new GoogleTranslateService(),
-                        userProfileRepository,
-                        searchRepository));
+        final TranslationService translationService = buildTranslationService(settings, mongoClient, databaseName, registry);
+
+        final UpdateDispatcher updateDispatcher = buildUpdateDispatcher(settings);
+        Runtime.getRuntime().addShutdownHook(new Thread(updateDispatcher::shutdown));
+
+        final InlineAnswerCache answerCache = new InlineAnswerCache(
+                settings.getLong("telegram.lanxat.answer-cache.maximum-size", 10_000),
+                Duration.ofMinutes(settings.getLong("telegram.lanxat.answer-cache.expire-after-write-minutes", 60)),
+                Duration.ofSeconds(settings.getLong("telegram.lanxat.answer-cache.telegram-cache-seconds", 5)));
+        answerCache.bindTo(registry);
+
+        final LanXatTelegramBot bot = new LanXatTelegramBot(
+                botName,
+                lanxatApiToken,
+                translationService,
+                userProfileRepository,
+                searchRepository,
+                answerCache,
+                updateDispatcher,
+                new HashedWheelTimer(Duration.ofMillis(10), 512),
+                buildDebounceConfig(settings),
+                buildSenderConfig(settings),
+                registry);
+
+        final String updatesMode = settings.getString("telegram.lanxat.updates.mode", "polling");
+
+        switch (updatesMode) {
+            case "polling":
+                var session = api.registerBot(bot); // Also removes the webhook, if there was one
+                break;
+            case "webhook":
+                registerWebhook(bot, settings, webhookUpdateHandler);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown telegram.lanxat.updates.mode: " + updatesMode);
+        }
+
+        System.out.println("Bot registered: " + botName + " (" + updatesMode + ")");
+    }
+
+    /** Tells Telegram to send the updates to our webhook endpoint (see {@link com.codethen.api.TelegramWebhookController}) */
+    private static void registerWebhook(LanXatTelegramBot bot, BotSettings settings, @Nullable WebhookUpdateHandler webhookUpdateHandler)
+            throws TelegramApiException {
+
+        if (webhookUpdateHandler == null) {
+            throw new IllegalArgumentException("Webhook mode needs the web server (run the Spring Boot app)");
+        }
 
-        System.out.println("Bot registered: " + botName);
+        final String url = settings.getString("telegram.lanxat.webhook.url", "");
+        final String secretToken = settings.getString("telegram.lanxat.webhook.secret-token", "");
+        if (url.isEmpty() || secretToken.isEmpty()) {
+            throw new IllegalArgumentException("Webhook mode needs telegram.lanxat.webhook.url and telegram.lanxat.webhook.secret-token");
+        }
+
+        // Ready before Telegram starts sending updates
+        webhookUpdateHandler.setHandler(bot::onUpdateReceived);
+
+        bot.execute(SetWebhook.builder()
+                .url(url)
+                .secretToken(secretToken)
+                .build());
+    }
+
+    private static AdaptiveDebouncer.Config buildDebounceConfig(BotSettings settings) {
+        final AdaptiveDebouncer.Config config = new AdaptiveDebouncer.Config();
+        config.minDelay = Duration.ofMillis(settings.getLong("telegram.lanxat.debounce.min-delay-millis", 250));
+        config.maxDelay = Duration.ofMillis(settings.getLong("telegram.lanxat.debounce.max-delay-millis", 2000));
+        config.percentile = settings.getDouble("telegram.lanxat.debounce.percentile", 90);
+        config.idleEviction = Duration.ofMinutes(settings.getLong("telegram.lanxat.debounce.idle-eviction-minutes", 10));
+        return config;
+    }
+
+    private static TelegramSender.Config buildSenderConfig(BotSettings settings) {
+        final TelegramSender.Config config = new TelegramSender.Config();
+        config.perChatBurst = settings.getInt("telegram.lanxat.sender.per-chat-burst", 3);
+        config.perChatRefill = Duration.ofMillis(settings.getLong("telegram.lanxat.sender.per-chat-refill-millis", 3000));
+        config.globalPerSecond = settings.getInt("telegram.lanxat.sender.global-per-second", 30);
+        config.maxQueuedPerChat = settings.getInt("telegram.lanxat.sender.max-queued-per-chat", 20);
+        config.maxQueued = settings.getInt("telegram.lanxat.sender.max-queued", 1000);
+        config.maxRetries = settings.getInt("telegram.lanxat.sender.max-retries", 3);
+        config.threads = settings.getInt("telegram.lanxat.sender.threads", config.globalPerSecond);
+        return config;
+    }
+
+    /** Virtual threads if configured and supported by the JVM, otherwise platform thread stripes */
+    private static UpdateDispatcher buildUpdateDispatcher(BotSettings settings) {
+
+        final String mode = settings.getString("telegram.lanxat.dispatcher.mode", "striped");
+        final int queueCapacity = settings.getInt("telegram.lanxat.dispatcher.queue-capacity", 100);
+
+        switch (mode) {
+            case "virtual":
+                if (VirtualThreadUpdateDispatcher.isSupported()) {
+                    System.out.println("Processing updates in virtual threads");
+                    return new VirtualThreadUpdateDispatcher(queueCapacity);
+                }
+                System.out.println("Virtual threads not supported in Java " + Runtime.version().feature() + ", using striped mode");
+                // Fall through
+            case "striped":
+                return new StripedUpdateDispatcher(
+                        settings.getInt("telegram.lanxat.dispatcher.stripes", 2 * Runtime.getRuntime().availableProcessors()),
+                        queueCapacity);
+            default:
+                throw new IllegalArgumentException("Unknown telegram.lanxat.dispatcher.mode: " + mode);
+        }
+    }
+
+    /** The translation API wrapped in the layers enabled in the settings (the last one is the outermost) */
+    private static TranslationService buildTranslationService(BotSettings settings, MongoClient mongoClient, String databaseName,
+                                                              MeterRegistry registry) {
+
+        TranslationService translationService = buildProviderService(settings, registry);
+
+        if (settings.getBoolean("translation.local-detection.enabled", true)) {
+            translationService = new LocalDetectTranslationService(
+                    translationService,
+                    new NgramLanguageDetector(),
+                    settings.getDouble("translation.local-detection.min-confidence", 0.9),
+                    registry);
+        }
+
+        final TranslationRepository translationRepository =
+                buildTranslationRepository(settings, mongoClient, databaseName);
+        if (translationRepository != null) {
+            translationService = new PersistentTranslationService(translationService, translationRepository);
+        }
+
+        // Below the cache, so concurrent misses of the same translation share one call
+        translationService = new CoalescingTranslationService(translationService);
+
+        final CachedTranslationService cachedService = new CachedTranslationService(
+                translationService,
+                settings.getLong("translation.cache.maximum-size", 10_000),
+                Duration.ofMinutes(settings.getLong("translation.cache.expire-after-write-minutes", 12 * 60)));
+        cachedService.bindTo(registry);
+        translationService = cachedService;
+
+        // Inline queries are at most 256 characters, so by default only bot messages are segmented
+        translationService = new SegmentingTranslationService(
+                translationService,
+                settings.getInt("translation.segmentation.min-chars", 257));
+
+        return translationService;
+    }
+
+    /** The translation API(s) to call, combined as the strategy in the settings says */
+    private static TranslationService buildProviderService(BotSettings settings, MeterRegistry registry) {
+
+        final TranslationService google = protect(settings, registry, "google",
+                new GoogleTranslateService(
+                        Duration.ofMillis(settings.getLong("translation.google.batch.window-millis", 5)),
+                        settings.getInt("translation.google.batch.max-texts", 128),
+                        settings.getInt("translation.google.batch.max-chars", 30_000)));
+
+        // TODO: Yandex needs an API key (see YandexTranslateService), so only Google is used by default
+        final String strategy = settings.getString("translation.strategy", "single");
+
+        switch (strategy) {
+            case "single":
+                return google;
+            case "hedging":
+                return new HedgingTranslationService(
+                        google,
+                        buildYandexService(settings, registry),
+                        settings.getDouble("translation.hedging.percentile", 95),
+                        Duration.ofMillis(settings.getLong("translation.hedging.min-delay-millis", 50)),
+                        Duration.ofMillis(settings.getLong("translation.hedging.max-delay-millis", 1000)));
+            case "routing":
+                final LinkedHashMap<String, TranslationService> backends = new LinkedHashMap<>();
+                backends.put("google", google);
+                backends.put("yandex", buildYandexService(settings, registry));
+                return new RoutingTranslationService(
+                        backends,
+                        settings.getDouble("translation.routing.exploration-rate", 0.05));
+            default:
+                throw new IllegalArgumentException("Unknown translation.strategy: " + strategy);
+        }
+    }
+
+    private static TranslationService buildYandexService(BotSettings settings, MeterRegistry registry) {
+        return protect(settings, registry, "yandex", new YandexTranslateService(YandexApiFactory.build()));
+    }
+
+    /** Wraps the translation API with the quota and resilience layers enabled in the settings, and times its calls */
+    private static TranslationService protect(BotSettings settings, MeterRegistry registry, String name, TranslationService translationService) {
+        final TranslationService metered = new MeteredTranslationService(name, translationService, registry);
+        return quota(settings, registry, name, resilient(settings, registry, name, metered));
+    }
+
+    /** Wraps the translation API so it stays within its quota (settings are by API name) */
+    private static TranslationService quota(BotSettings settings, MeterRegistry registry, String name, TranslationService translationService) {
+
+        if (!settings.getBoolean("translation.quota.enabled", true)) return translationService;
+
+        final String prefix = "translation.quota." + name + ".";
+        final boolean google = name.equals("google"); // Defaults are the ones in application.properties
+
+        final QuotaTranslationService quotaService = new QuotaTranslationService(
+                name,
+                translationService,
+                settings.getLong(prefix + "chars-per-minute", google ? 6_000_000 : 100_000),
+                settings.getLong(prefix + "requests-per-minute", google ? 6_000 : 1_000),
+                settings.getDouble("translation.quota.low-priority-reserve", 0.2),
+                Duration.ofMillis(settings.getLong("translation.quota.high-priority-max-wait-millis", 1000)),
+                Duration.ofMillis(settings.getLong("translation.quota.low-priority-max-wait-millis", 300)),
+                settings.getInt("translation.quota.max-queued", 1000));
+
+        final Tags tags = Tags.of("provider", name);
+        Gauge.builder("lanxat.provider.quota.queued", quotaService, QuotaTranslationService::getQueued).tags(tags).register(registry);
+        Gauge.builder("lanxat.provider.quota.remaining.chars", quotaService, QuotaTranslationService::getRemainingChars).tags(tags).register(registry);
+        Gauge.builder("lanxat.provider.quota.remaining.requests", quotaService, QuotaTranslationService::getRemainingRequests).tags(tags).register(registry);
+        return quotaService;
+    }
+
+    /** Wraps the translation API so it fails fast when it's failing or overloaded */
+    private static TranslationService resilient(BotSettings settings, MeterRegistry registry, String name, TranslationService translationService) {
+
+        if (!settings.getBoolean("translation.resilience.enabled", true)) return translationService;
+
+        final ResilientTranslationService resilientService = new ResilientTranslationService(
+                name,
+                translationService,
+                new CircuitBreaker(
+                        name,
+                        settings.getInt("translation.resilience.circuit.window-size", 50),
+                        settings.getInt("translation.resilience.circuit.min-calls", 10),
+                        settings.getDouble("translation.resilience.circuit.failure-rate", 0.5),
+                        settings.getLong("translation.resilience.circuit.open-millis", 10_000),
+                        settings.getInt("translation.resilience.circuit.half-open-probes", 3)),
+                new AdaptiveConcurrencyLimit(
+                        settings.getInt("translation.resilience.limit.initial", 20),
+                        settings.getInt("translation.resilience.limit.min", 2),
+                        settings.getInt("translation.resilience.limit.max", 200),
+                        settings.getDouble("translation.resilience.limit.backoff-ratio", 0.9),
+                        settings.getLong("translation.resilience.limit.slow-call-millis", 2000)),
+                Duration.ofMillis(settings.getLong("translation.resilience.timeout-millis", 5000)));
+
+        final Tags tags = Tags.of("provider", name);
+        // 0 closed, 1 open, 2 half open
+        Gauge.builder("lanxat.provider.circuit.state", resilientService, service -> service.getCircuitBreaker().getState().ordinal())
+                .tags(tags).register(registry);
+        Gauge.builder("lanxat.provider.concurrency.limit", resilientService, service -> service.getConcurrencyLimit().getLimit())
+                .tags(tags).register(registry);
+        Gauge.builder("lanxat.provider.concurrency.in-flight", resilientService, service -> service.getConcurrencyLimit().getInFlight())
+                .tags(tags).register(registry);
+        return resilientService;
+    }
+
+    /** Returns null if translations shouldn't be stored */
+    private static TranslationRepository buildTranslationRepository(BotSettings settings, MongoClient mongoClient, String databaseName) {
+
+        final String type = settings.getString("translation.persistent-cache.type", "mongo");
+
+        switch (type) {
+            case "mongo":
+                return new MongoTranslationRepository(mongoClient, databaseName);
+            case "file":
+                final MappedFileTranslationRepository repository = new MappedFileTranslationRepository(
+                        Path.of(settings.getString("translation.persistent-cache.file.directory", "translations")),
+                        settings.getInt("translation.persistent-cache.file.initial-log-size", 16 << 20),
+                        settings.getInt("translation.persistent-cache.file.max-log-size", 1 << 30),
+                        settings.getInt("translation.persistent-cache.file.initial-index-capacity", 1 << 16));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        repository.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                return repository;
+            case "none":
+                return null;
+            default:
+                throw new IllegalArgumentException("Unknown translation.persistent-cache.type: " + type);
+        }
     }
 
     private static String getEnvChecked(String name) {
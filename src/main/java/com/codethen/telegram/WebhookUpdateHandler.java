@@ -0,0 +1,29 @@
+package com.codethen.telegram;
+
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.function.Consumer;
+
+/**
+ * Connects the webhook endpoint (see {@link com.codethen.api.TelegramWebhookController}) with the bot,
+ * which is registered after the Spring context starts (see {@link RegisterBots}).
+ */
+@Component
+public class WebhookUpdateHandler {
+
+    private volatile Consumer<Update> handler;
+
+    /** Called when the bot is registered in webhook mode */
+    public void setHandler(Consumer<Update> handler) {
+        this.handler = handler;
+    }
+
+    /** Returns false if there's no bot registered in webhook mode (yet) */
+    public boolean handle(Update update) {
+        final Consumer<Update> current = handler;
+        if (current == null) return false;
+        current.accept(update);
+        return true;
+    }
+}
@@ -0,0 +1,181 @@
+package com.codethen.telegram.lanxatbot;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Emits the last value submitted for a key once the key has been quiet for a while, e.g. when a user stops typing.
+ *
+ * How long to wait is learnt for each key: it's a percentile of the recent gaps between its values
+ * (so a fast typist waits less), between a minimum and a maximum. Values can also be emitted right away
+ * (e.g. when the text ends a sentence).
+ *
+ * Submitting a value is O(1): a map update and, at most, a timeout in the shared {@link HashedWheelTimer}.
+ * When the wait changes, the pending timeout is not rescheduled; when it fires too early it schedules
+ * another one. Keys that have been idle for a while are evicted, so they take no memory.
+ *
+ * Values are emitted in the timer thread (or the submitting one), so the consumer must be quick.
+ */
+public class AdaptiveDebouncer<T> {
+
+    /** Gaps remembered for each key */
+    private static final int GAP_SAMPLES = 16;
+    /** Until there are this many gaps, the maximum wait is used */
+    private static final int MIN_GAP_SAMPLES = 4;
+
+    private final HashedWheelTimer timer;
+    private final Config config;
+    private final BiConsumer<Long, T> consumer;
+
+    private final Map<Long, KeyState<T>> states = new ConcurrentHashMap<>();
+
+    public AdaptiveDebouncer(HashedWheelTimer timer, Config config, BiConsumer<Long, T> consumer) {
+        this.timer = timer;
+        this.config = config;
+        this.consumer = consumer;
+    }
+
+    /** @param immediate emit now instead of waiting for a pause */
+    public void submit(long key, T value, boolean immediate) {
+
+        final long now = System.nanoTime();
+        final Object[] toEmit = {null};
+
+        // Every change to a state is done in the map's compute methods, which are atomic per key
+        states.compute(key, (k, state) -> {
+
+            // The first value has no gap (nanoTime can be any value, so lastSubmit can't tell)
+            if (state == null) {
+                state = new KeyState<>();
+            } else {
+                final long gap = now - state.lastSubmit;
+                if (gap < config.maxDelay.toNanos()) state.recordGap(gap); // Longer gaps are pauses, not typing
+            }
+            state.lastSubmit = now;
+
+            if (immediate) {
+                toEmit[0] = value;
+                state.pending = null;
+            } else {
+                state.pending = value;
+                state.deadline = now + delayNanos(state);
+                if (!state.timeoutScheduled || state.deadline - state.scheduledAt < 0) {
+                    schedule(key, state, state.deadline, now);
+                }
+            }
+
+            scheduleEviction(key, state);
+            return state;
+        });
+
+        emit(key, toEmit[0]);
+    }
+
+    /** Number of keys remembered (pending or recently active) */
+    public int getKeyCount() {
+        return states.size();
+    }
+
+    /** The wait for a key, given its recent gaps */
+    private long delayNanos(KeyState<T> state) {
+
+        final long min = config.minDelay.toNanos();
+        final long max = config.maxDelay.toNanos();
+        if (state.gapCount < MIN_GAP_SAMPLES) return max;
+
+        final long[] gaps = Arrays.copyOf(state.gaps, state.gapCount);
+        Arrays.sort(gaps);
+        final int index = (int) Math.ceil(config.percentile / 100 * gaps.length) - 1;
+        return Math.max(min, Math.min(max, gaps[Math.max(0, index)]));
+    }
+
+    private void schedule(long key, KeyState<T> state, long at, long now) {
+        state.timeoutScheduled = true;
+        state.scheduledAt = at;
+        timer.schedule(() -> onTimeout(key), Duration.ofNanos(Math.max(0, at - now)));
+    }
+
+    private void onTimeout(long key) {
+
+        final long now = System.nanoTime();
+        final Object[] toEmit = {null};
+
+        states.computeIfPresent(key, (k, state) -> {
+            state.timeoutScheduled = false;
+            if (state.pending == null) return state;
+            if (now - state.deadline >= 0) {
+                toEmit[0] = state.pending;
+                state.pending = null;
+            } else {
+                schedule(key, state, state.deadline, now); // The user typed again since this was scheduled
+            }
+            return state;
+        });
+
+        emit(key, toEmit[0]);
+    }
+
+    private void scheduleEviction(long key, KeyState<T> state) {
+        if (state.evictionScheduled) return;
+        state.evictionScheduled = true;
+        timer.schedule(() -> onEvictionTimeout(key), config.idleEviction);
+    }
+
+    private void onEvictionTimeout(long key) {
+
+        final long now = System.nanoTime();
+
+        states.computeIfPresent(key, (k, state) -> {
+            state.evictionScheduled = false;
+            final long idle = now - state.lastSubmit;
+            if (state.pending == null && idle >= config.idleEviction.toNanos()) return null;
+            // Still active: check again when it could be idle long enough
+            state.evictionScheduled = true;
+            timer.schedule(() -> onEvictionTimeout(key),
+                    Duration.ofNanos(Math.max(config.idleEviction.toNanos() - idle, config.maxDelay.toNanos())));
+            return state;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emit(long key, Object value) {
+        if (value != null) consumer.accept(key, (T) value);
+    }
+
+    /** Limits of the wait; defaults can be overridden */
+    public static class Config {
+
+        public Duration minDelay = Duration.ofMillis(250);
+        public Duration maxDelay = Duration.ofSeconds(2);
+        /** Percentile of the recent gaps between values of a key */
+        public double percentile = 90;
+        /** Keys are forgotten after this time without values */
+        public Duration idleEviction = Duration.ofMinutes(10);
+    }
+
+    /** Guarded by the map (only changed in its compute methods) */
+    private static class KeyState<T> {
+
+        T pending;
+        long lastSubmit;
+        /** When the pending value should be emitted */
+        long deadline;
+        boolean timeoutScheduled;
+        /** Deadline of the scheduled timeout, if {@link #timeoutScheduled} */
+        long scheduledAt;
+        boolean evictionScheduled;
+
+        final long[] gaps = new long[GAP_SAMPLES];
+        int gapCount;
+        int nextGap;
+
+        void recordGap(long gap) {
+            gaps[nextGap] = gap;
+            nextGap = (nextGap + 1) % GAP_SAMPLES;
+            gapCount = Math.min(gapCount + 1, GAP_SAMPLES);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.codethen.telegram.lanxatbot;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer for many short timeouts (like one per user typing), where scheduling must be cheap
+ * and some imprecision (up to a tick) is fine.
+ *
+ * Time is divided in ticks, and the wheel has a bucket per tick (wrapping around). Scheduling just adds
+ * the timeout to a queue, which the timer thread moves to the bucket of its deadline; at each tick,
+ * the thread runs the timeouts due in the current bucket. Both are O(1) per timeout.
+ *
+ * The tasks run in the timer thread, so they must be quick (e.g. hand work to another executor).
+ */
+public class HashedWheelTimer {
+
+    private final long tickNanos;
+    private final Queue<Timeout>[] wheel;
+    private final int mask;
+
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final long startTime;
+    private final Thread worker;
+
+    /** @param wheelSize buckets (rounded up to a power of 2); timeouts longer than the wheel take several rounds */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(Duration tick, int wheelSize) {
+
+        this.tickNanos = tick.toNanos();
+
+        final int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) wheel[i] = new ArrayDeque<>();
+        this.mask = size - 1;
+
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, "hashed-wheel-timer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /** Runs the task after the delay (rounded up to the next tick) */
+    public Timeout schedule(Runnable task, Duration delay) {
+        final Timeout timeout = new Timeout(task, System.nanoTime() - startTime + delay.toNanos());
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        worker.interrupt();
+    }
+
+    private void run() {
+
+        long tick = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+
+            final long sleepNanos = (tick + 1) * tickNanos - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            addNewTimeouts(tick);
+            expireTimeouts(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /** Only called from the worker thread, like all access to the buckets */
+    private void addNewTimeouts(long currentTick) {
+
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.cancelled) continue;
+            final long deadlineTick = Math.max(currentTick, (timeout.deadline + tickNanos - 1) / tickNanos);
+            timeout.remainingRounds = (deadlineTick - currentTick) / wheel.length;
+            wheel[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private static void expireTimeouts(Queue<Timeout> bucket) {
+
+        for (Iterator<Timeout> it = bucket.iterator(); it.hasNext(); ) {
+
+            final Timeout timeout = it.next();
+
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                it.remove();
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /** A scheduled task, which can be cancelled */
+    public static class Timeout {
+
+        private final Runnable task;
+        /** Nanos since the timer started */
+        private final long deadline;
+        private volatile boolean cancelled;
+        /** Only used by the worker thread */
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
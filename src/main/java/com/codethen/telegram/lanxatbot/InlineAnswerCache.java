@@ -0,0 +1,80 @@
+package com.codethen.telegram.lanxatbot;
+
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationKey;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultArticle;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Caches the results of inline queries, so a repeated query is answered without translating anything.
+ * Entries are keyed by the {@link TranslationKey} of the request (the text and the user's {@link com.codethen.telegram.lanxatbot.profile.LangConfig}).
+ *
+ * Telegram can also cache the answers in its servers, for {@link #getCacheTimeSeconds()}.
+ */
+public class InlineAnswerCache implements MeterBinder {
+
+    private final Cache<TranslationKey, Answer> cache;
+    private final int cacheTimeSeconds;
+
+    /**
+     * @param cacheTime how long Telegram may cache answers (for each user, since they depend on the user's config).
+     *                  Telegram doesn't ask the bot meanwhile, so changes of the user's config are ignored until then.
+     */
+    public InlineAnswerCache(long maximumSize, Duration expireAfterWrite, Duration cacheTime) {
+
+        this.cacheTimeSeconds = (int) cacheTime.toSeconds();
+
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /** Returns null if the answer is not cached */
+    public Answer get(TranslationKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(TranslationKey key, Answer answer) {
+        cache.put(key, answer);
+    }
+
+    public int getCacheTimeSeconds() {
+        return cacheTimeSeconds;
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    /** Cache metrics (gets, hits, evictions, size...) with cache="inline-answers" */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        GuavaCacheMetrics.monitor(registry, cache, "inline-answers");
+    }
+
+    /** The results of an inline query, and the translation they show (needed to register the search) */
+    public static class Answer {
+
+        public final List<InlineQueryResultArticle> results;
+        public final TranslationData translation;
+
+        public Answer(List<InlineQueryResultArticle> results, TranslationData translation) {
+            this.results = results;
+            this.translation = translation;
+        }
+    }
+}
@@ -1,19 +1,27 @@
 package com.codethen.telegram.lanxatbot;
 
+import com.codethen.metrics.OutcomeTimer;
+import com.codethen.metrics.Timings;
 import com.codethen.telegram.lanxatbot.exception.*;
 import com.codethen.telegram.lanxatbot.profile.LangConfig;
 import com.codethen.telegram.lanxatbot.profile.UserProfile;
 import com.codethen.telegram.lanxatbot.profile.UserProfileRepository;
 import com.codethen.telegram.lanxatbot.search.SearchEntry;
 import com.codethen.telegram.lanxatbot.search.SearchRepository;
+import com.codethen.telegram.lanxatbot.translate.Futures;
 import com.codethen.telegram.lanxatbot.translate.TranslationData;
-import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationKey;
+import com.codethen.telegram.lanxatbot.translate.TranslationPriority;
 import com.codethen.telegram.lanxatbot.translate.TranslationService;
-import io.reactivex.rxjava3.core.Observable;
-import io.reactivex.rxjava3.core.ObservableEmitter;
-import io.reactivex.rxjava3.disposables.Disposable;
+import com.codethen.telegram.lanxatbot.translate.TranslationUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.ParseMode;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Message;
@@ -24,12 +32,14 @@ import org.telegram.telegrambots.meta.api.objects.inlinequery.inputmessageconten
 import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultArticle;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.io.Serializable;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static com.codethen.telegram.lanxatbot.profile.LangConfig.ARROW;
@@ -49,8 +59,8 @@ import static java.util.Collections.singletonList;
  */
 public class LanXatTelegramBot extends TelegramLongPollingBot {
 
-    private final HashMap<Long, ObservableEmitter<TranslationRequestData>> translationEmitters;
-    private final HashMap<Long, Disposable> translationSubscriptions;
+    /** When the query ends like this, the user probably finished writing */
+    private static final String SENTENCE_END = ".!?…。！？";
 
     private enum Command {
 
@@ -84,23 +94,102 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
     private final UserProfileRepository userProfileRepo;
     private final SearchRepository searchRepository;
 
+    private final InlineAnswerCache answerCache;
+    private final UpdateDispatcher updateDispatcher;
+    private final TelegramSender sender;
+    private final AdaptiveDebouncer<TranslationRequestData> translationDebouncer;
+    /** Inline translation in progress for each user */
+    private final Map<Long, CompletableFuture<Void>> inlineTranslations = new ConcurrentHashMap<>();
+
+    /** Timer for the stages of the processing, tagged with the stage and the outcome */
+    private static final String STAGE_TIMER = "lanxat.stage";
+    private final Timer dispatchTimer;
+    private final Timer throttleTimer;
+    private final OutcomeTimer translateTimer;
+    private final OutcomeTimer reverseTimer;
+    private final OutcomeTimer answerTimer;
+    private final OutcomeTimer searchTimer;
+    /** From the inline query (before throttling) to the end of its processing */
+    private final OutcomeTimer inlineTimer;
+    private final OutcomeTimer messageTimer;
+
     public LanXatTelegramBot(String botName,
                              String apiToken,
                              TranslationService translationService,
                              UserProfileRepository userProfileRepo,
-                             SearchRepository searchRepository) {
+                             SearchRepository searchRepository,
+                             InlineAnswerCache answerCache,
+                             UpdateDispatcher updateDispatcher,
+                             HashedWheelTimer timer,
+                             AdaptiveDebouncer.Config debounceConfig,
+                             TelegramSender.Config senderConfig,
+                             MeterRegistry registry) {
+        super(buildBotOptions(senderConfig), apiToken);
         this.botName = botName;
         this.apiToken = apiToken;
         this.translationService = translationService;
         this.userProfileRepo = userProfileRepo;
         this.searchRepository = searchRepository;
-
-        this.translationEmitters = new HashMap<>();
-        this.translationSubscriptions = new HashMap<>();
+        this.answerCache = answerCache;
+        this.updateDispatcher = updateDispatcher;
+        this.sender = new TelegramSender(this, senderConfig);
+
+        // Back to the user's dispatcher queue, since the debouncer emits in the timer thread (which must not wait)
+        this.translationDebouncer = new AdaptiveDebouncer<>(timer, debounceConfig,
+                (userId, trd) -> updateDispatcher.offer(userId, () -> processTranslation(trd)));
+
+        this.dispatchTimer = Timings.timer(registry, STAGE_TIMER, Tags.of("stage", "dispatch", "outcome", "success"));
+        this.throttleTimer = Timings.timer(registry, STAGE_TIMER, Tags.of("stage", "throttle", "outcome", "success"));
+        this.translateTimer = new OutcomeTimer(registry, STAGE_TIMER, Tags.of("stage", "translate"));
+        this.reverseTimer = new OutcomeTimer(registry, STAGE_TIMER, Tags.of("stage", "reverse"));
+        this.answerTimer = new OutcomeTimer(registry, STAGE_TIMER, Tags.of("stage", "answer"));
+        this.searchTimer = new OutcomeTimer(registry, STAGE_TIMER, Tags.of("stage", "search"));
+        this.inlineTimer = new OutcomeTimer(registry, STAGE_TIMER, Tags.of("stage", "inline"));
+        this.messageTimer = new OutcomeTimer(registry, STAGE_TIMER, Tags.of("stage", "message"));
+
+        Gauge.builder("lanxat.debouncer.keys", translationDebouncer, AdaptiveDebouncer::getKeyCount)
+                .description("Users remembered by the debouncer of inline queries").register(registry);
+        Gauge.builder("lanxat.inline.in-flight", inlineTranslations, Map::size)
+                .description("Inline translations in progress").register(registry);
+        Gauge.builder("lanxat.dispatcher.pending", updateDispatcher, UpdateDispatcher::getPending)
+                .description("Updates waiting to be processed").register(registry);
+        Gauge.builder("lanxat.telegram.queued", sender, TelegramSender::getQueued)
+                .description("Requests waiting to be sent to Telegram").register(registry);
+    }
+
+    /** By default the bot sends requests in a single thread, so it could only send one per round trip to Telegram */
+    private static DefaultBotOptions buildBotOptions(TelegramSender.Config senderConfig) {
+        final DefaultBotOptions options = new DefaultBotOptions();
+        options.setMaxThreads(senderConfig.threads);
+        return options;
     }
 
+    /**
+     * Called from the thread that receives the updates, so they're processed elsewhere
+     * (in order for each user, see {@link UpdateDispatcher}).
+     * Inline queries are dropped when the user's queue is full, since the user is still typing
+     * and a later query replaces them. Other updates (commands, messages) wait for room.
+     */
     public void onUpdateReceived(Update update) {
 
+        final User user = getUserFrom(update);
+        final long key = user != null ? user.getId() : 0;
+        final long received = System.nanoTime();
+
+        final Runnable task = () -> {
+            dispatchTimer.record(System.nanoTime() - received, TimeUnit.NANOSECONDS);
+            processUpdate(update);
+        };
+
+        if (update.hasInlineQuery()) {
+            updateDispatcher.offer(key, task);
+        } else {
+            updateDispatcher.dispatch(key, task);
+        }
+    }
+
+    private void processUpdate(Update update) {
+
         try {
             try {
                 if (update.hasInlineQuery()) {
@@ -158,7 +247,7 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
         return null;
     }
 
-    private void sendError(Update update, String markdown) throws TelegramApiException {
+    private void sendError(Update update, String markdown) {
 
         if (update.hasMessage()) {
             sendMessage(update.getMessage(), markdown);
@@ -169,7 +258,7 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
         }
     }
 
-    private void processInlineQuery(Update update) throws TelegramApiException {
+    private void processInlineQuery(Update update) {
 
         final InlineQuery inlineQuery = update.getInlineQuery();
         final String query = inlineQuery.getQuery();
@@ -187,28 +276,17 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Throttles translations using {@link Observable#throttleLast(long, TimeUnit)},
-     * so translations are only sent when the user stops writing for some specified time.
+     * Debounces translations using the {@link AdaptiveDebouncer},
+     * so translations are only sent when the user stops writing (or ends a sentence).
      */
     private void throttleTranslation(TranslationRequestData trd) {
-
-        final Long userId = trd.profile.getId();
-
-        if (!translationEmitters.containsKey(userId)) {
-
-            final Observable<TranslationRequestData> observable = Observable.create(emitter -> {
-                translationEmitters.put(userId, emitter);
-            });
-
-            final Disposable disposable = observable
-                .throttleLast(2, TimeUnit.SECONDS)
-                .subscribe(this::processTranslation, Throwable::printStackTrace);
-
-            translationSubscriptions.put(userId, disposable);
-        }
-
         System.out.println("Throttling translation: " + trd);
-        translationEmitters.get(userId).onNext(trd);
+        translationDebouncer.submit(trd.profile.getId(), trd, endsSentence(trd.request.text));
+    }
+
+    private static boolean endsSentence(String text) {
+        final String stripped = text.strip();
+        return !stripped.isEmpty() && SENTENCE_END.indexOf(stripped.charAt(stripped.length() - 1)) >= 0;
     }
 
     /**
@@ -220,6 +298,8 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
         public final TranslationData request;
         public final UserProfile profile;
         public final InlineQuery inlineQuery;
+        /** When the query was processed, before throttling (see {@link System#nanoTime()}) */
+        public final long created = System.nanoTime();
 
         public TranslationRequestData(TranslationData request, UserProfile profile, InlineQuery inlineQuery) {
             this.request = request;
@@ -237,40 +317,102 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
         }
     }
 
-    private void processTranslation(TranslationRequestData trd) throws TelegramApiException {
+    /**
+     * Translates the request and its reverse, answers the inline query and saves the search.
+     * Nothing here blocks: each step continues when the previous remote call completes.
+     *
+     * A new translation for the same user cancels the previous one if it's still in progress,
+     * since Telegram only shows the answer to the latest query. Called in the user's dispatcher
+     * queue, so translations of a user don't run this concurrently.
+     */
+    private CompletableFuture<Void> processTranslation(TranslationRequestData trd) {
 
         System.out.println("Processing translation: " + trd);
+        throttleTimer.record(System.nanoTime() - trd.created, TimeUnit.NANOSECONDS);
+
+        final Long userId = trd.profile.getId();
+
+        final CompletableFuture<Void> previous = inlineTranslations.get(userId);
+        if (previous != null && previous.cancel(true)) {
+            System.out.println("Cancelled superseded translation of user " + userId);
+        }
+
+        final TranslationKey key = TranslationKey.of(trd.request);
+        final InlineAnswerCache.Answer cached = answerCache.get(key);
+
+        final CompletableFuture<Void> translating;
+
+        if (cached != null) {
+
+            System.out.println("Answer from cache: " + key);
+            translating = Futures.thenCompose(answerTimer.time(answerInlineQuery(trd, cached.results)), answered ->
+                    searchTimer.time(saveSearch(trd, cached.translation)));
+
+        } else {
+
+            translating = Futures.thenCompose(translateTimer.time(translationService.translateAsync(trd.request)), translation -> {
+
+                System.out.println("Translation: '" + translation.text + "'");
+
+                final TranslationData revReq = new TranslationData();
+                revReq.text = translation.text;
+                revReq.langConfig = translation.langConfig.reverse();
 
-        final TranslationData translation = translationService.translate(trd.request);
-        System.out.println("Translation: '" + translation.text + "'");
+                return Futures.thenCompose(reverseTimer.time(translationService.translateAsync(revReq)), revTranslation -> {
 
-        saveSearch(trd, translation);
+                    final List<InlineQueryResultArticle> results = buildResults(trd, translation, revTranslation);
+                    answerCache.put(key, new InlineAnswerCache.Answer(results, translation));
 
-        final TranslationData revReq = new TranslationData();
-        revReq.text = translation.text;
-        revReq.langConfig = translation.langConfig.reverse();
+                    return Futures.thenCompose(answerTimer.time(answerInlineQuery(trd, results)), answered ->
+                            searchTimer.time(saveSearch(trd, translation)));
+                });
+            });
+        }
+
+        inlineTimer.time(translating, trd.created);
+
+        inlineTranslations.put(userId, translating);
+        translating.whenComplete((done, e) -> inlineTranslations.remove(userId, translating));
+
+        return translating.exceptionally(e -> {
+            final Throwable cause = Futures.unwrap(e);
+            if (!(cause instanceof CancellationException)) cause.printStackTrace();
+            return null;
+        });
+    }
+
+    private List<InlineQueryResultArticle> buildResults(TranslationRequestData trd, TranslationData translation, TranslationData revTranslation) {
 
-        TranslationData revTranslation = translationService.translate(revReq);
         System.out.println("Reversed: '" + revTranslation.text + "'");
 
         final String langTo = translation.langConfig.getTo();
         final String langFrom = translation.langConfig.getFrom();
         final String langToRev = revTranslation.langConfig.getTo();
 
-        execute(AnswerInlineQuery.builder()
+        return List.of(
+                buildResult(getThumbnail(langTo), langTo, translation.text, "1"),
+                buildResult(getThumbnail(langFrom), langFrom + " (original)", trd.request.text, "2"),
+                buildResult(getThumbnail(revTranslation.langConfig.getTo()), translation.getLangs() + ARROW + langToRev + " (reversed)", revTranslation.text, "3"),
+                buildResult(null, translation.langConfig.getFrom() + " / " + translation.langConfig.getTo(), "- " + trd.request.text + "\n" + "- " + translation.text, "4")
+        );
+    }
+
+    /** Results depend on the user's config, so Telegram caches them for each user */
+    private CompletableFuture<Void> answerInlineQuery(TranslationRequestData trd, List<InlineQueryResultArticle> results) {
+
+        final AnswerInlineQuery answer = AnswerInlineQuery.builder()
                 .inlineQueryId(trd.inlineQuery.getId())
-                .cacheTime(0) // TODO: Maybe adjust later as needed
-                .results(List.of(
-                        buildResult(getThumbnail(langTo), langTo, translation.text, "1"),
-                        buildResult(getThumbnail(langFrom), langFrom + " (original)", trd.request.text, "2"),
-                        buildResult(getThumbnail(revTranslation.langConfig.getTo()), translation.getLangs() + ARROW + langToRev + " (reversed)", revTranslation.text, "3"),
-                        buildResult(null, translation.langConfig.getFrom() + " / " + translation.langConfig.getTo(), "- " + trd.request.text + "\n" + "- " + translation.text, "4")
-                )).build());
+                .cacheTime(answerCache.getCacheTimeSeconds())
+                .isPersonal(true)
+                .results(results)
+                .build();
+
+        return sender.send(null, answer).thenAccept(answered -> {});
     }
 
-    private void saveSearch(TranslationRequestData trd, TranslationData translation) {
+    private CompletableFuture<Void> saveSearch(TranslationRequestData trd, TranslationData translation) {
 
-        searchRepository.registerSearch(new SearchEntry(
+        return searchRepository.registerSearch(new SearchEntry(
             trd.profile.getId(),
             new Date(),
             trd.request.text,
@@ -280,14 +422,15 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
         ));
     }
 
-    private String getThumbnail(String lang) {
+    /** Package-private for benchmarks, like {@link #buildResult} */
+    static String getThumbnail(String lang) {
         final String countryCode = lang.equals("en") ? "gb" : lang;
         return "https://www.countryflags.io/" + countryCode + "/flat/64.png";
     }
 
-    private void displayInlineHelpButton(InlineQuery inlineQuery, String text) throws TelegramApiException {
+    private void displayInlineHelpButton(InlineQuery inlineQuery, String text) {
 
-        execute(AnswerInlineQuery.builder()
+        send(null, AnswerInlineQuery.builder()
                 .inlineQueryId(inlineQuery.getId())
                 .cacheTime(0)
                 .switchPmText(text)
@@ -295,34 +438,12 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
                 .build());
     }
 
-    /**
-     * In ".en.ru" matcher would capture groups: null, "en", "ru".
-     * In "(es,en,ru) .en.ru" matcher would capture groups: "es,en,fr", "en", "ru".
-     * In "() .en.ru" matcher would capture groups: "", "en", "ru".
-     */
-    private static final String hintsAndLangsPatternStr = "(?:\\(([a-z,]*)\\)\\s+)?\\.([a-z][a-z])\\.([a-z][a-z])";
-    /** In ".name" matcher would capture group: "name". */
-    private static final String langConfigPatternStr = "\\.(\\w+)";
-    /** In "   message" matcher would capture group: "message". */
-    private static final String messagePatternStr = "\\s+(.+)";
-    /** In ".en.ru message" matcher would capture groups: "en", "ru", "message". */
-    private static final Pattern hintsAndLangsAndMessagePattern = Pattern.compile(hintsAndLangsPatternStr + messagePatternStr);
-    /** In ".name message" matcher would capture groups: "name", "message". */
-    private static final Pattern langConfigAndMessagePattern = Pattern.compile(langConfigPatternStr + messagePatternStr);
-    /**
-     * In ".name = .en.ru" matcher would capture groups: "name", null, "en", "ru".
-     * In ".name = (es,en) .en.ru" matcher would capture groups: "name", "es,en", "en", "ru".
-     * In ".name = () .en.ru" matcher would capture groups: "name", "", "en", "ru".
-     * In ".name =" matcher would capture groups: "name", null, null.
-     */
-    private static final Pattern hintsAndLangConfigSetupPattern = Pattern.compile(langConfigPatternStr + "\\s*=\\s*" + "(?:" + hintsAndLangsPatternStr + ")?");
-
     private String getUserInfo(User user) {
         return user.getUserName() + " (" + user.getId() + ")";
     }
 
     /**
-     * Parses query, witch may be {@link #hintsAndLangsAndMessagePattern}, {@link #langConfigAndMessagePattern},
+     * Parses query (see {@link QueryParser}), which may have explicit languages, the name of a {@link LangConfig},
      * or otherwise it's just a plain text with no pattern.
      *
      * If a pattern matches, we decide the {@link LangConfig} from there
@@ -336,30 +457,27 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
     private TranslationData buildTranslationRequest(String query, UserProfile profile, SpecialLangConfig defaultConfig) {
 
         final TranslationData request = new TranslationData();
-
-        final Matcher hintsAndLangsAndMessage = hintsAndLangsAndMessagePattern.matcher(query);
-        if (hintsAndLangsAndMessage.matches()) {
-            request.langConfig = buildLangConfigFromMatcher(hintsAndLangsAndMessage, 1);
-            request.text = hintsAndLangsAndMessage.group(4);
-        } else {
-            final Matcher langConfigAndMessage = langConfigAndMessagePattern.matcher(query);
-            if (langConfigAndMessage.matches()) {
-                final String langConfigName = langConfigAndMessage.group(1);
-                request.langConfig = profile.getLangConfigs().get(langConfigName);
+        final ParsedQuery parsed = QueryParser.parseTranslation(query, new ParsedQuery());
+
+        switch (parsed.kind) {
+            case langs:
+                request.langConfig = parsed.buildLangConfig();
+                break;
+            case langConfigName:
+                request.langConfig = profile.getLangConfigs().get(parsed.langConfigName);
                 if (request.langConfig == null) {
-                    throw new LangConfigNotExistsException(langConfigName);
+                    throw new LangConfigNotExistsException(parsed.langConfigName);
                 }
-                request.text = langConfigAndMessage.group(2);
-            } else {
+                break;
+            default:
                 request.langConfig = profile.getLangConfigs().get(defaultConfig.name());
-                request.text = query;
-            }
         }
 
+        request.text = parsed.text;
         return request;
     }
 
-    private void processMessageOrCommand(Update update) throws TelegramApiException {
+    private void processMessageOrCommand(Update update) {
 
         if (!update.hasMessage()) {
             System.out.println("Received update without message");
@@ -383,66 +501,54 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
         }
     }
 
-    private void processMessage(Message message) throws TelegramApiException {
+    private void processMessage(Message message) {
 
-        final Matcher matcher = hintsAndLangConfigSetupPattern.matcher(message.getText());
-        if (matcher.matches()) {
-            final String langConfigName = matcher.group(1);
-            final LangConfig langConfig = buildLangConfigFromMatcher(matcher, 2);
-            setupLangConfig(langConfigName, langConfig, message);
+        final ParsedQuery parsed = QueryParser.parseSetup(message.getText(), new ParsedQuery());
+        if (parsed.kind == ParsedQuery.Kind.setup) {
+            setupLangConfig(parsed.langConfigName, parsed.buildLangConfig(), message);
             return;
         }
 
         processMessageAsTranslation(message);
     }
 
-    /** Builds a {@link LangConfig} from the data taken from the {@link Matcher} */
-    private LangConfig buildLangConfigFromMatcher(Matcher matcher, int firstGroupIndex) {
-
-        // TODO: This is Java 11, I'm trying it :)
-        final var hintsStr = matcher.group(firstGroupIndex);
-        final var langFrom = matcher.group(firstGroupIndex + 1);
-        final var langTo = matcher.group(firstGroupIndex + 2);
-
-        if (langFrom == null) return null;
-
-        // If hintsStr part is not present there is no auto-detection
-        final List<String> hints = hintsStr == null ? null :
-                (hintsStr.isEmpty() ? Collections.emptyList() :
-                        Arrays.asList(hintsStr.split(",")));
-
-        return new LangConfig(hints, langFrom, langTo);
-    }
-
-    private void processMessageAsTranslation(Message message) throws TelegramApiException {
+    private void processMessageAsTranslation(Message message) {
 
         final UserProfile profile = getProfile(message.getFrom());
 
         final TranslationData request = buildTranslationRequest(message.getText(), profile, SpecialLangConfig.bot);
+        request.priority = TranslationPriority.LOW; // Inline queries go first when the quota is short
 
-        try {
-            final TranslationData translation = translationService.translate(request);
-            final String msg = "Translated " + translation.getLangs() + "\n" + translation.text;
-            System.out.println("Sent translation " + translation.getLangs() + ": '" + translation.text + "'");
-            sendMessage(message, msg);
-        } catch (TranslationException e) {
-            e.printStackTrace();
-            sendMessage(message, "There was an error with translation API: " + e.getMessage());
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-            sendMessage(message, "There was an error with Telegram API: " + e.getMessage());
-        }
+        // Not waiting for the translation, so the dispatcher thread is free for the updates of other users
+        messageTimer.time(translationService.translateAsync(request)).whenComplete((translation, e) -> {
+
+            if (e == null) {
+                final String msg = "Translated " + translation.getLangs() + "\n" + translation.text;
+                System.out.println("Sent translation " + translation.getLangs() + ": '" + translation.text + "'");
+                sendMessage(message, msg);
+                return;
+            }
+
+            final Throwable cause = Futures.unwrap(e);
+            if (cause instanceof TranslationUnavailableException) {
+                System.out.println("Translation unavailable for message: " + cause.getMessage());
+                sendMessage(message, "I'm busy right now, please try again in a moment.");
+            } else {
+                cause.printStackTrace();
+                sendMessage(message, "There was an error with translation API: " + cause.getMessage());
+            }
+        });
     }
 
-    private void sendMessage(Message originalMessage, String markdown) throws TelegramApiException {
-        execute(SendMessage.builder()
+    private void sendMessage(Message originalMessage, String markdown) {
+        send(originalMessage.getChatId(), SendMessage.builder()
                 .chatId(originalMessage.getChatId())
                 .text(markdown)
                 .parseMode(ParseMode.MARKDOWN)
                 .build());
     }
 
-    private void processCommand(Message message) throws TelegramApiException {
+    private void processCommand(Message message) {
 
         final String commandStr = message.getText();
 
@@ -459,7 +565,7 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
      * Sets or removes a language configuration and sends a message about the change.
      * If the langConfigName is a {@link SpecialLangConfig}, it won't be removed (it's not allowed).
      */
-    private void setupLangConfig(String langConfigName, LangConfig langConfig, Message message) throws TelegramApiException {
+    private void setupLangConfig(String langConfigName, LangConfig langConfig, Message message) {
 
         final UserProfile profile = getProfile(message.getFrom());
         final String langConfigAsMarkdown = "`" + langConfigNameToPattern(langConfigName) + "`";
@@ -489,7 +595,7 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
     /**
      * The {@link Command#langconfig} is used to display or setup language configurations.
      */
-    private void processLangConfigCommand(Message message, String commandStr) throws TelegramApiException {
+    private void processLangConfigCommand(Message message, String commandStr) {
 
         final String[] commandParts = commandStr.split("\\s+");
 
@@ -544,12 +650,12 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
         }
     }
 
-    /** Returns the {@link LangConfig} name with the {@link #langConfigPatternStr} pattern. */
+    /** Returns the {@link LangConfig} name as written in queries (see {@link QueryParser}). */
     private String langConfigNameToPattern(String langConfigName) {
         return "." + langConfigName;
     }
 
-    /** Returns the {@link LangConfig} looking like {@link #hintsAndLangsPatternStr}. */
+    /** Returns the {@link LangConfig} as written in queries (see {@link QueryParser}). */
     private String toLangsPattern(LangConfig langConfig) {
 
         final String detect = langConfig.getHints() != null ?
@@ -562,7 +668,7 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
      * The {@link Command#start} displays general instructions to the user.
      * It may be used with parameter {@link #HELP_INLINE_START_PARAM} for instructions about inline mode.
      */
-    private void processStartCommand(Message message, String commandStr) throws TelegramApiException {
+    private void processStartCommand(Message message, String commandStr) {
 
         final String[] commandParts = commandStr.split("\\s+");
 
@@ -582,7 +688,7 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
                             "Try the inline mode by clicking the button below!" +
                             "";
 
-            execute(SendMessage.builder()
+            send(message.getChatId(), SendMessage.builder()
                     .chatId(message.getChatId())
                     .text(markdown)
                     .parseMode(ParseMode.MARKDOWN)
@@ -637,25 +743,34 @@ public class LanXatTelegramBot extends TelegramLongPollingBot {
         return text.startsWith(commandText.get(command));
     }
 
-    private void sendInfoResult(InlineQuery inlineQuery, String markdown) throws TelegramApiException {
+    private void sendInfoResult(InlineQuery inlineQuery, String markdown) {
         sendSingleResult(inlineQuery, "Information", markdown);
     }
 
-    private void sendErrorResult(InlineQuery inlineQuery, String markdown) throws TelegramApiException {
+    private void sendErrorResult(InlineQuery inlineQuery, String markdown) {
         sendSingleResult(inlineQuery, "Error", markdown);
     }
 
-    private void sendSingleResult(InlineQuery inlineQuery, String title, String markdown) throws TelegramApiException {
+    private void sendSingleResult(InlineQuery inlineQuery, String title, String markdown) {
 
         final String id = "1"; // Each result should have a different id
 
-        execute(AnswerInlineQuery.builder()
+        send(null, AnswerInlineQuery.builder()
                 .inlineQueryId(inlineQuery.getId())
                 .results(List.of(buildResult(null, title, markdown, id)))
                 .build());
     }
 
-    private InlineQueryResultArticle buildResult(String thumbUrl, String title, String markdownText, String resultId) {
+    /** Sends through the {@link TelegramSender}, so the caller doesn't wait; errors are just logged */
+    private <T extends Serializable> void send(Long chatId, BotApiMethod<T> method) {
+        sender.send(chatId, method).exceptionally(e -> {
+            Futures.unwrap(e).printStackTrace();
+            return null;
+        });
+    }
+
+    /** Package-private for benchmarks (built for every inline answer) */
+    static InlineQueryResultArticle buildResult(String thumbUrl, String title, String markdownText, String resultId) {
         return InlineQueryResultArticle.builder()
                 .id(resultId)
                 .title(title)
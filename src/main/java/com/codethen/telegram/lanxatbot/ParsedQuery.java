@@ -0,0 +1,59 @@
+package com.codethen.telegram.lanxatbot;
+
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of {@link QueryParser}. It can be reused: the parser resets it before filling it.
+ */
+public class ParsedQuery {
+
+    public enum Kind {
+
+        /** "(hints) .xx.yy message" */
+        langs,
+        /** ".name message" */
+        langConfigName,
+        /** ".name = (hints) .xx.yy" or ".name =" */
+        setup,
+        /** Just a message */
+        plain
+    }
+
+    public Kind kind;
+
+    /** Hints for detection: null if not present, empty if "()" */
+    public String hints;
+    /** Null if there are no languages */
+    public String langFrom;
+    public String langTo;
+
+    public String langConfigName;
+    /** Message, null for {@link Kind#setup} */
+    public String text;
+
+    void reset() {
+        kind = null;
+        hints = null;
+        langFrom = null;
+        langTo = null;
+        langConfigName = null;
+        text = null;
+    }
+
+    /** Builds a {@link LangConfig} from the parsed languages, or returns null if there are none */
+    public LangConfig buildLangConfig() {
+
+        if (langFrom == null) return null;
+
+        // If hints are not present there is no auto-detection
+        final List<String> hintList = hints == null ? null :
+                (hints.isEmpty() ? Collections.emptyList() :
+                        Arrays.asList(hints.split(",")));
+
+        return new LangConfig(hintList, langFrom, langTo);
+    }
+}
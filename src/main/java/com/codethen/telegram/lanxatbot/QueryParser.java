@@ -0,0 +1,166 @@
+package com.codethen.telegram.lanxatbot;
+
+/**
+ * Parses the texts users send to the bot, in a single pass and without regular expressions
+ * (inline queries are parsed on every keystroke).
+ *
+ * Texts to translate ({@link #parseTranslation}):
+ * <ul>
+ *     <li>"(es,en,ru) .en.ru message": hints for detection (optional, may be empty "()"), languages and message.</li>
+ *     <li>".name message": name of one of the user's {@link com.codethen.telegram.lanxatbot.profile.LangConfig}s and message.</li>
+ *     <li>Otherwise, the whole text is the message.</li>
+ * </ul>
+ *
+ * Setup of a {@link com.codethen.telegram.lanxatbot.profile.LangConfig} ({@link #parseSetup}):
+ * ".name = (es,en) .en.ru" (hints optional) or ".name =" (to remove it).
+ *
+ * Languages are two lowercase letters, hints are lowercase letters and commas, names are word characters
+ * (letters, digits and '_') and the message can't contain line breaks. Spaces are any whitespace.
+ */
+public final class QueryParser {
+
+    private QueryParser() {}
+
+    /** Parses a text to translate, see {@link QueryParser}. The result is reset and filled, and returned. */
+    public static ParsedQuery parseTranslation(String query, ParsedQuery result) {
+
+        result.reset();
+
+        final int langsEnd = parseLangs(query, 0, result);
+        if (langsEnd >= 0) {
+            result.text = parseMessage(query, langsEnd);
+            if (result.text != null) {
+                result.kind = ParsedQuery.Kind.langs;
+                return result;
+            }
+            result.reset();
+        }
+
+        final int nameEnd = parseName(query, 0);
+        if (nameEnd >= 0) {
+            result.text = parseMessage(query, nameEnd);
+            if (result.text != null) {
+                result.kind = ParsedQuery.Kind.langConfigName;
+                result.langConfigName = query.substring(1, nameEnd);
+                return result;
+            }
+        }
+
+        result.kind = ParsedQuery.Kind.plain;
+        result.text = query;
+        return result;
+    }
+
+    /**
+     * Parses the setup of a {@link com.codethen.telegram.lanxatbot.profile.LangConfig}, see {@link QueryParser}.
+     * The result is reset and filled, and returned; its kind is {@link ParsedQuery.Kind#plain} if the text is not a setup.
+     */
+    public static ParsedQuery parseSetup(String text, ParsedQuery result) {
+
+        result.reset();
+        result.kind = ParsedQuery.Kind.plain;
+        result.text = text;
+
+        final int nameEnd = parseName(text, 0);
+        if (nameEnd < 0) return result;
+
+        int i = skipSpaces(text, nameEnd);
+        if (i == text.length() || text.charAt(i) != '=') return result;
+        i = skipSpaces(text, i + 1);
+
+        if (i < text.length()) {
+            final int langsEnd = parseLangs(text, i, result);
+            if (langsEnd != text.length()) {
+                result.reset();
+                result.kind = ParsedQuery.Kind.plain;
+                result.text = text;
+                return result;
+            }
+        }
+
+        result.kind = ParsedQuery.Kind.setup;
+        result.langConfigName = text.substring(1, nameEnd);
+        result.text = null;
+        return result;
+    }
+
+    /** Parses "(hints) .xx.yy" (hints optional) from the given index, returns where it ends or -1 */
+    private static int parseLangs(String s, int i, ParsedQuery result) {
+
+        final int n = s.length();
+        String hints = null;
+
+        if (i < n && s.charAt(i) == '(') {
+            int j = i + 1;
+            while (j < n && (isLowercase(s.charAt(j)) || s.charAt(j) == ',')) j++;
+            if (j < n && s.charAt(j) == ')') {
+                final int k = skipSpaces(s, j + 1);
+                if (k > j + 1) {
+                    hints = s.substring(i + 1, j);
+                    i = k;
+                }
+            }
+        }
+
+        if (i + 6 > n
+                || s.charAt(i) != '.' || !isLowercase(s.charAt(i + 1)) || !isLowercase(s.charAt(i + 2))
+                || s.charAt(i + 3) != '.' || !isLowercase(s.charAt(i + 4)) || !isLowercase(s.charAt(i + 5))) {
+            return -1;
+        }
+
+        result.hints = hints;
+        result.langFrom = s.substring(i + 1, i + 3);
+        result.langTo = s.substring(i + 4, i + 6);
+        return i + 6;
+    }
+
+    /** Parses ".name" from the given index, returns where it ends or -1 */
+    private static int parseName(String s, int i) {
+
+        if (i >= s.length() || s.charAt(i) != '.') return -1;
+        int j = i + 1;
+        while (j < s.length() && isWordChar(s.charAt(j))) j++;
+        return j > i + 1 ? j : -1;
+    }
+
+    /**
+     * Parses spaces and a message until the end, returns the message or null.
+     * If there are only spaces, the last one is the message (as long as there are two).
+     */
+    private static String parseMessage(String s, int i) {
+
+        final int n = s.length();
+        final int start = skipSpaces(s, i);
+        if (start == i) return null;
+
+        if (start == n) {
+            return start - i >= 2 && !isLineBreak(s.charAt(n - 1)) ? s.substring(n - 1) : null;
+        }
+
+        for (int j = start; j < n; j++) {
+            if (isLineBreak(s.charAt(j))) return null;
+        }
+        return s.substring(start);
+    }
+
+    private static int skipSpaces(String s, int i) {
+        while (i < s.length() && isSpace(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean isLowercase(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isWordChar(char c) {
+        return isLowercase(c) || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
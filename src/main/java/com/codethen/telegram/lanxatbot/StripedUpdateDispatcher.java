@@ -0,0 +1,92 @@
+package com.codethen.telegram.lanxatbot;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tasks in a fixed number of stripes, each one a single thread with a bounded queue.
+ * The key decides the stripe, so the tasks with the same key run in order, while the ones
+ * in different stripes run in parallel.
+ *
+ * When the queue of a stripe is full, {@link #offer} drops the task (and logs it), while {@link #dispatch}
+ * waits for room, which slows down the thread that receives the updates.
+ */
+public class StripedUpdateDispatcher implements UpdateDispatcher {
+
+    private final ThreadPoolExecutor[] stripes;
+
+    public StripedUpdateDispatcher(int stripeCount, int queueCapacity) {
+
+        stripes = new ThreadPoolExecutor[stripeCount];
+
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    new ThreadFactoryBuilder().setNameFormat("update-stripe-" + i).setDaemon(true).build());
+        }
+    }
+
+    @Override
+    public void dispatch(long key, Runnable task) {
+
+        final int stripe = stripeOf(key);
+
+        try {
+            stripes[stripe].execute(task);
+        } catch (RejectedExecutionException e) {
+            if (stripes[stripe].isShutdown()) {
+                System.out.println("Dropping update for key " + key + ": stripe " + stripe + " is shut down");
+                return;
+            }
+            System.out.println("Stripe " + stripe + " is full, waiting to queue update for key " + key);
+            try {
+                // The stripe thread is running, since its queue is full, so it will take the task
+                stripes[stripe].getQueue().put(task);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                System.out.println("Dropping update for key " + key + ": interrupted while waiting");
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(long key, Runnable task) {
+
+        final int stripe = stripeOf(key);
+
+        try {
+            stripes[stripe].execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            System.out.println("Dropping update for key " + key + ": stripe " + stripe + " is full or shut down");
+            return false;
+        }
+    }
+
+    @Override
+    public int getPending() {
+        int pending = 0;
+        for (ThreadPoolExecutor stripe : stripes) pending += stripe.getQueue().size();
+        return pending;
+    }
+
+    @Override
+    public void shutdown() {
+        for (ExecutorService stripe : stripes) stripe.shutdown();
+        try {
+            for (ExecutorService stripe : stripes) stripe.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int stripeOf(long key) {
+        // Mix the bits, since user ids are not uniformly distributed
+        return Math.floorMod(Long.hashCode(key * 0x9E3779B97F4A7C15L), stripes.length);
+    }
+}
@@ -0,0 +1,240 @@
+package com.codethen.telegram.lanxatbot;
+
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.translate.TokenBucket;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the bot's requests to Telegram without blocking the caller, within Telegram's limits:
+ * about one message per second in each chat and about 30 per second overall.
+ * See: https://core.telegram.org/bots/faq#my-bot-is-hitting-limits-how-do-i-avoid-this
+ *
+ * Requests wait in bounded queues (one per chat) until the token buckets of their chat and the global one allow them.
+ * Requests without a chat (e.g. inline query answers) are only limited by the global bucket and go first,
+ * since someone is waiting for them. When Telegram still answers "429 Too Many Requests", the request is retried
+ * after the time Telegram says, and its chat (or everything, for requests without a chat) waits until then.
+ */
+public class TelegramSender {
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("telegram-sender-%d").setDaemon(true).build());
+
+    private final AbsSender bot;
+    private final Config config;
+
+    // Guarded by this
+    private final TokenBucket global;
+    private final Deque<Outgoing<?>> withoutChat = new ArrayDeque<>();
+    private final Map<Long, ChatQueue> chats = new LinkedHashMap<>();
+    private int queued;
+    private long pausedUntil;
+    private boolean drainScheduled;
+
+    public TelegramSender(AbsSender bot, Config config) {
+        this.bot = bot;
+        this.config = config;
+        this.global = new TokenBucket(config.globalPerSecond, TimeUnit.SECONDS.toNanos(1));
+        this.pausedUntil = System.nanoTime(); // Not 0, since nanoTime may be negative
+    }
+
+    /**
+     * Queues the request. The returned future fails if the queues are full or Telegram answers with an error.
+     * @param chatId chat where the request sends something, or null if it doesn't send to a chat
+     */
+    public <T extends Serializable> CompletableFuture<T> send(@Nullable Long chatId, BotApiMethod<T> method) {
+
+        final Outgoing<T> outgoing = new Outgoing<>(chatId, method);
+
+        synchronized (this) {
+
+            final Deque<Outgoing<?>> queue = chatId == null ? withoutChat :
+                    chats.computeIfAbsent(chatId, id -> new ChatQueue()).queue;
+
+            if (queued >= config.maxQueued || (chatId != null && queue.size() >= config.maxQueuedPerChat)) {
+                return CompletableFuture.failedFuture(new TelegramApiException(
+                        "Too many requests waiting to be sent to Telegram" + (chatId == null ? "" : " for chat " + chatId)));
+            }
+
+            queue.add(outgoing);
+            queued++;
+            scheduleDrain(0);
+        }
+
+        return outgoing.result;
+    }
+
+    /** Requests waiting to be sent */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /** Sends the requests that the buckets allow now, and schedules the next drain if some have to wait */
+    private void drain() {
+
+        final List<Outgoing<?>> toSend = new ArrayList<>();
+
+        synchronized (this) {
+
+            drainScheduled = false;
+            final long now = System.nanoTime();
+
+            if (now - pausedUntil >= 0) {
+
+                while (!withoutChat.isEmpty() && global.available(now) >= 1) {
+                    takeFrom(withoutChat, null, now, toSend);
+                }
+
+                // Round-robin, one request per chat and pass, so a busy chat doesn't delay the others
+                boolean progress = true;
+                while (progress && global.available(now) >= 1) {
+                    progress = false;
+                    for (Iterator<ChatQueue> it = chats.values().iterator(); it.hasNext(); ) {
+                        final ChatQueue chat = it.next();
+                        if (chat.queue.isEmpty()) {
+                            if (chat.bucket.available(now) >= config.perChatBurst) it.remove(); // Idle
+                            continue;
+                        }
+                        if (now - chat.pausedUntil < 0 || chat.bucket.available(now) < 1 || global.available(now) < 1) continue;
+                        takeFrom(chat.queue, chat, now, toSend);
+                        progress = true;
+                    }
+                }
+            }
+
+            if (queued > 0) scheduleDrain(nanosUntilNextSend(now));
+        }
+
+        toSend.forEach(this::start);
+    }
+
+    private void takeFrom(Deque<Outgoing<?>> queue, @Nullable ChatQueue chat, long now, List<Outgoing<?>> toSend) {
+        final Outgoing<?> outgoing = queue.poll();
+        queued--;
+        if (outgoing.result.isDone()) return; // Cancelled while waiting
+        global.take(1, now);
+        if (chat != null) chat.bucket.take(1, now);
+        toSend.add(outgoing);
+    }
+
+    private long nanosUntilNextSend(long now) {
+
+        long wait = Long.MAX_VALUE;
+        if (!withoutChat.isEmpty()) wait = 0;
+        for (ChatQueue chat : chats.values()) {
+            if (!chat.queue.isEmpty()) {
+                wait = Math.min(wait, Math.max(chat.pausedUntil - now, chat.bucket.nanosUntil(1, now)));
+            }
+        }
+
+        wait = Math.max(wait, Math.max(pausedUntil - now, global.nanosUntil(1, now)));
+        return Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private void scheduleDrain(long delayNanos) {
+        if (drainScheduled) return;
+        drainScheduled = true;
+        timer.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private <T extends Serializable> void start(Outgoing<T> outgoing) {
+
+        final CompletableFuture<T> sent;
+        try {
+            sent = bot.executeAsync(outgoing.method);
+        } catch (TelegramApiException e) {
+            outgoing.result.completeExceptionally(e);
+            return;
+        }
+
+        sent.whenComplete((response, e) -> {
+            if (e == null) {
+                outgoing.result.complete(response);
+            } else if (!retryLater(outgoing, Futures.unwrap(e))) {
+                outgoing.result.completeExceptionally(Futures.unwrap(e));
+            }
+        });
+    }
+
+    /** Returns false if the request shouldn't be retried */
+    private synchronized boolean retryLater(Outgoing<?> outgoing, Throwable e) {
+
+        if (!(e instanceof TelegramApiRequestException)) return false;
+        final TelegramApiRequestException requestException = (TelegramApiRequestException) e;
+
+        if (!Integer.valueOf(429).equals(requestException.getErrorCode())) return false;
+        if (outgoing.retries++ >= config.maxRetries) return false;
+
+        final Integer retryAfter = requestException.getParameters() == null ? null : requestException.getParameters().getRetryAfter();
+        final long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfter != null ? retryAfter : 1);
+
+        System.out.println("Telegram asked to wait " + retryAfter + " s" + (outgoing.chatId == null ? "" : " in chat " + outgoing.chatId));
+
+        if (outgoing.chatId == null) {
+            pausedUntil = until; // Only the global limit applies to it, so every request waits (chats too)
+            withoutChat.addFirst(outgoing);
+        } else {
+            final ChatQueue chat = chats.computeIfAbsent(outgoing.chatId, id -> new ChatQueue());
+            chat.pausedUntil = until;
+            chat.queue.addFirst(outgoing);
+        }
+        queued++;
+        scheduleDrain(0);
+        return true;
+    }
+
+    /** Limits; defaults can be overridden */
+    public static class Config {
+
+        public int perChatBurst = 3;
+        public Duration perChatRefill = Duration.ofSeconds(3);
+        public int globalPerSecond = 30;
+        public int maxQueuedPerChat = 20;
+        public int maxQueued = 1000;
+        /** Retries after "429 Too Many Requests" */
+        public int maxRetries = 3;
+        /**
+         * Threads of the bot that send the requests (each one waits for Telegram's answer), so requests
+         * can be sent at the global rate while Telegram answers within a second
+         */
+        public int threads = 30;
+    }
+
+    /** Guarded by the sender */
+    private class ChatQueue {
+        final Deque<Outgoing<?>> queue = new ArrayDeque<>();
+        final TokenBucket bucket = new TokenBucket(config.perChatBurst, config.perChatRefill.toNanos());
+        long pausedUntil = System.nanoTime();
+    }
+
+    private static class Outgoing<T extends Serializable> {
+
+        final Long chatId;
+        final BotApiMethod<T> method;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        int retries;
+
+        Outgoing(Long chatId, BotApiMethod<T> method) {
+            this.chatId = chatId;
+            this.method = method;
+        }
+    }
+}
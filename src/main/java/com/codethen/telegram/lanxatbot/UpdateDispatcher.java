@@ -0,0 +1,23 @@
+package com.codethen.telegram.lanxatbot;
+
+/**
+ * Runs the processing of the updates received by the bot, so the thread receiving them doesn't wait.
+ * Tasks with the same key (e.g. from the same user) run in order; tasks with different keys may run in parallel.
+ */
+public interface UpdateDispatcher {
+
+    /** Runs a task that can't be lost: if too many tasks are pending, it may wait for room instead of dropping it */
+    void dispatch(long key, Runnable task);
+
+    /**
+     * Runs a task that can be lost, because a later one replaces it (e.g. inline queries).
+     * If too many tasks are pending, the task is dropped and false is returned. Never waits.
+     */
+    boolean offer(long key, Runnable task);
+
+    /** Tasks waiting to run (an approximation, for monitoring) */
+    int getPending();
+
+    /** Stops accepting tasks and waits a bit for the pending ones to finish */
+    void shutdown();
+}
@@ -0,0 +1,117 @@
+package com.codethen.telegram.lanxatbot;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each task in its own virtual thread (Java 21+), so blocking calls (Mongo, Telegram, translation APIs)
+ * don't hold a platform thread and many updates can be processed at the same time.
+ *
+ * The tasks of a key are chained, so they still run in order. Tasks given to {@link #offer} are dropped
+ * (and logged) when maxPendingPerKey tasks are waiting for the key; the ones given to {@link #dispatch} are always chained.
+ *
+ * The project is built for Java 17, so the executor is created by reflection.
+ * Use {@link #isSupported()} before creating an instance.
+ */
+public class VirtualThreadUpdateDispatcher implements UpdateDispatcher {
+
+    private final ExecutorService executor;
+    private final int maxPendingPerKey;
+
+    /** Last task of each key with pending tasks */
+    private final Map<Long, KeyTasks> tasksByKey = new ConcurrentHashMap<>();
+
+    public VirtualThreadUpdateDispatcher(int maxPendingPerKey) {
+        this.executor = newVirtualThreadPerTaskExecutor();
+        this.maxPendingPerKey = maxPendingPerKey;
+    }
+
+    /**
+     * Whether the running JVM can create virtual threads. In Java 19 and 20 the method exists,
+     * but throws unless preview features are enabled, so an executor is actually created.
+     */
+    public static boolean isSupported() {
+        try {
+            newVirtualThreadPerTaskExecutor().shutdown();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void dispatch(long key, Runnable task) {
+        chain(key, task, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean offer(long key, Runnable task) {
+        return chain(key, task, maxPendingPerKey);
+    }
+
+    private boolean chain(long key, Runnable task, int maxPending) {
+
+        final boolean[] dropped = {false};
+
+        tasksByKey.compute(key, (k, tasks) -> {
+            if (tasks == null) tasks = new KeyTasks();
+            if (tasks.pending >= maxPending) {
+                dropped[0] = true;
+                return tasks;
+            }
+            tasks.pending++;
+            tasks.last = tasks.last.thenRunAsync(() -> run(key, task), executor);
+            return tasks;
+        });
+
+        if (dropped[0]) {
+            System.out.println("Dropping update for key " + key + ": too many pending");
+        }
+        return !dropped[0];
+    }
+
+    @Override
+    public int getPending() {
+        int pending = 0;
+        for (KeyTasks tasks : tasksByKey.values()) pending += tasks.pending; // Racy read, fine for monitoring
+        return pending;
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(long key, Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            e.printStackTrace(); // So the next tasks of the key still run
+        } finally {
+            tasksByKey.computeIfPresent(key, (k, tasks) -> --tasks.pending == 0 ? null : tasks);
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or newer", e);
+        }
+    }
+
+    /** Guarded by the map (only changed inside compute methods) */
+    private static class KeyTasks {
+        CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+        int pending;
+    }
+}
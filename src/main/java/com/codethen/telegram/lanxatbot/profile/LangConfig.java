@@ -2,6 +2,7 @@ package com.codethen.telegram.lanxatbot.profile;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Objects;
 
 public class LangConfig {
 
@@ -56,4 +57,22 @@ public class LangConfig {
     public LangConfig reverse() {
         return new LangConfig(null, to, this.from);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final LangConfig that = (LangConfig) o;
+        return Objects.equals(hints, that.hints) && Objects.equals(from, that.from) && Objects.equals(to, that.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hints, from, to);
+    }
+
+    @Override
+    public String toString() {
+        return shortDescription();
+    }
 }
@@ -1,6 +1,9 @@
 package com.codethen.telegram.lanxatbot.search;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface SearchRepository {
 
-    void registerSearch(SearchEntry searchEntry);
+    /** Cancelling the returned future cancels the write if it didn't happen yet */
+    CompletableFuture<Void> registerSearch(SearchEntry searchEntry);
 }
@@ -9,4 +9,5 @@ public class DetectRequest {
     @Nullable
     public List<String> possibleLangs;
     public String apiKey;
+    public TranslationPriority priority = TranslationPriority.HIGH;
 }
\ No newline at end of file
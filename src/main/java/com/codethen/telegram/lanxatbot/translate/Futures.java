@@ -0,0 +1,109 @@
+package com.codethen.telegram.lanxatbot.translate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/** Helpers for the {@link CompletableFuture}s returned by the async {@link TranslationService} methods. */
+public class Futures {
+
+    /**
+     * Runs blocking calls (e.g. HTTP requests) made asynchronous, instead of the common ForkJoinPool,
+     * which has as many threads as CPUs and is shared with the rest of the app.
+     * The number of concurrent calls is limited by the services, not here.
+     */
+    public static final ExecutorService BLOCKING_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("translation-blocking-%d").setDaemon(true).build());
+
+    private Futures() {}
+
+    /**
+     * Waits for the result, like {@link CompletableFuture#join()},
+     * but throws the original exception instead of a {@link CompletionException}.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new TranslationException("Unexpected error in async call", cause);
+        }
+    }
+
+    /** Returns the original exception, which is wrapped when it goes through dependent futures. */
+    public static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * Cancelling a dependent future (e.g. from {@link CompletableFuture#thenApply}) doesn't cancel
+     * the future it depends on. This makes it so, and returns the dependent future.
+     */
+    public static <T> CompletableFuture<T> propagateCancel(CompletableFuture<T> dependent, Future<?> source) {
+        dependent.whenComplete((r, e) -> {
+            if (dependent.isCancelled()) source.cancel(true);
+        });
+        return dependent;
+    }
+
+    /**
+     * Like {@link CompletableFuture#thenCompose}, but cancelling the returned future also cancels
+     * the source and the future returned by the function (if it was already called).
+     * Used in pipelines that are cancelled when their result is not needed anymore.
+     */
+    public static <T, U> CompletableFuture<U> thenCompose(CompletableFuture<T> source,
+                                                          Function<? super T, ? extends CompletableFuture<U>> fn) {
+
+        final CompletableFuture<U> result = new CompletableFuture<>();
+        final AtomicReference<CompletableFuture<U>> next = new AtomicReference<>();
+
+        source.whenComplete((value, e) -> {
+
+            if (e != null) {
+                result.completeExceptionally(unwrap(e));
+                return;
+            }
+            if (result.isDone()) return; // Cancelled
+
+            final CompletableFuture<U> started;
+            try {
+                started = fn.apply(value);
+            } catch (RuntimeException fnException) {
+                result.completeExceptionally(fnException);
+                return;
+            }
+
+            next.set(started);
+            if (result.isCancelled()) started.cancel(true); // Cancelled while starting
+
+            started.whenComplete((nextValue, nextException) -> {
+                if (nextException != null) {
+                    result.completeExceptionally(unwrap(nextException));
+                } else {
+                    result.complete(nextValue);
+                }
+            });
+        });
+
+        result.whenComplete((value, e) -> {
+            if (!result.isCancelled()) return;
+            source.cancel(true);
+            final CompletableFuture<U> started = next.get();
+            if (started != null) started.cancel(true);
+        });
+
+        return result;
+    }
+}
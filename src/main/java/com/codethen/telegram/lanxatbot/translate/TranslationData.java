@@ -6,8 +6,18 @@ public class TranslationData {
 
     public String text;
     public LangConfig langConfig;
+    public TranslationPriority priority = TranslationPriority.HIGH;
 
     public String getLangs() {
         return langConfig.shortDescription();
     }
+
+    /** Useful when an instance is shared (e.g. cached), so each user gets its own copy */
+    public TranslationData copy() {
+        final TranslationData result = new TranslationData();
+        result.text = text;
+        result.langConfig = langConfig;
+        result.priority = priority;
+        return result;
+    }
 }
@@ -0,0 +1,48 @@
+package com.codethen.telegram.lanxatbot.translate;
+
+import java.util.Date;
+
+/** A translation as stored by a {@link TranslationRepository}. */
+public class TranslationEntry {
+
+    /** See {@link TranslationKey#hash()} */
+    private final String id;
+    private final Date created;
+    private final String source;
+    private final String target;
+    private final String from;
+    private final String to;
+
+    public TranslationEntry(String id, Date created, String source, String target, String from, String to) {
+        this.id = id;
+        this.created = created;
+        this.source = source;
+        this.target = target;
+        this.from = from;
+        this.to = to;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+}
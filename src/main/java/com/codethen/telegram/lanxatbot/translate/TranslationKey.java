@@ -0,0 +1,86 @@
+package com.codethen.telegram.lanxatbot.translate;
+
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Identifies a translation: the normalized text plus the requested {@link LangConfig}
+ * (before language detection, so hints are part of the key).
+ * Two requests with the same key are expected to produce the same translation.
+ */
+public class TranslationKey {
+
+    private final String text;
+    private final LangConfig langConfig;
+
+    public TranslationKey(String text, LangConfig langConfig) {
+        this.text = normalize(text);
+        this.langConfig = langConfig;
+    }
+
+    public static TranslationKey of(TranslationData request) {
+        return new TranslationKey(request.text, request.langConfig);
+    }
+
+    /**
+     * Only surrounding whitespace is removed. Case and inner whitespace are kept,
+     * since they may change the translation (and line breaks matter in bot messages).
+     */
+    public static String normalize(String text) {
+        return text == null ? null : text.strip();
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public LangConfig getLangConfig() {
+        return langConfig;
+    }
+
+    /**
+     * 128-bit hash of the key, compact enough to be used as the id of a stored translation.
+     * Stores should still compare the text, since different keys may have the same hash.
+     */
+    public HashCode hash() {
+        final List<String> hints = langConfig.getHints();
+        return Hashing.murmur3_128().newHasher()
+                .putString(hints == null ? "-" : "(" + String.join(",", hints) + ")", StandardCharsets.UTF_8)
+                .putChar('|').putString(String.valueOf(langConfig.getFrom()), StandardCharsets.UTF_8)
+                .putChar('|').putString(String.valueOf(langConfig.getTo()), StandardCharsets.UTF_8)
+                .putChar('|').putString(text, StandardCharsets.UTF_8)
+                .hash();
+    }
+
+    /** Builds a request for this key, i.e. with the normalized text. The priority is not part of the key. */
+    public TranslationData toRequest(TranslationPriority priority) {
+        final TranslationData request = new TranslationData();
+        request.text = text;
+        request.langConfig = langConfig;
+        request.priority = priority;
+        return request;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final TranslationKey that = (TranslationKey) o;
+        return Objects.equals(text, that.text) && Objects.equals(langConfig, that.langConfig);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(text, langConfig);
+    }
+
+    @Override
+    public String toString() {
+        return langConfig + " : '" + text + "'";
+    }
+}
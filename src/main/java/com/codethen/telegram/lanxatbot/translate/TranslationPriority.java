@@ -0,0 +1,11 @@
+package com.codethen.telegram.lanxatbot.translate;
+
+/** When the translation quota is short, low priority requests wait so high priority ones get through. */
+public enum TranslationPriority {
+
+    /** Someone is waiting for the answer as they type (inline queries) */
+    HIGH,
+
+    /** Can take a bit longer (e.g. messages sent to the bot) */
+    LOW
+}
@@ -0,0 +1,17 @@
+package com.codethen.telegram.lanxatbot.translate;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores translations so they survive restarts.
+ * Results are like the ones of {@link TranslationService#translate(TranslationData)},
+ * i.e. {@link TranslationData#langConfig} has the languages actually used.
+ */
+public interface TranslationRepository {
+
+    /** Completes with null if there's no translation stored for the key */
+    CompletableFuture<TranslationData> find(TranslationKey key);
+
+    /** Stores the translation without waiting for the write to finish */
+    void save(TranslationKey key, TranslationData translation);
+}
@@ -2,6 +2,8 @@ package com.codethen.telegram.lanxatbot.translate;
 
 import com.codethen.telegram.lanxatbot.profile.LangConfig;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface TranslationService {
 
     /**
@@ -16,6 +18,21 @@ public interface TranslationService {
 
     DetectResponse detect(DetectRequest request) throws TranslationException;
 
+    /**
+     * Like {@link #translate(TranslationData)} but without blocking the calling thread.
+     * This default just runs the blocking call in {@link Futures#BLOCKING_EXECUTOR}; services calling remote APIs
+     * should override it so no thread waits for the response.
+     * Errors complete the future exceptionally (usually with a {@link TranslationException}).
+     */
+    default CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+        return CompletableFuture.supplyAsync(() -> translate(request), Futures.BLOCKING_EXECUTOR);
+    }
+
+    /** Like {@link #detect(DetectRequest)} but without blocking. See {@link #translateAsync(TranslationData)}. */
+    default CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return CompletableFuture.supplyAsync(() -> detect(request), Futures.BLOCKING_EXECUTOR);
+    }
+
     default LangConfig langConfigToUse(TranslationData request) {
         if (request.langConfig.shouldDetectLang()) {
             final DetectResponse detectResponse = detect(buildDetectRequest(request));
@@ -26,10 +43,23 @@ public interface TranslationService {
         }
     }
 
+    /** Like {@link #langConfigToUse(TranslationData)} but using {@link #detectAsync(DetectRequest)}. */
+    default CompletableFuture<LangConfig> langConfigToUseAsync(TranslationData request) {
+        if (request.langConfig.shouldDetectLang()) {
+            return detectAsync(buildDetectRequest(request)).thenApply(detectResponse -> {
+                final String langTo = decideLangTo(detectResponse, request.langConfig);
+                return new LangConfig(null, detectResponse.langs.get(0), langTo);
+            });
+        } else {
+            return CompletableFuture.completedFuture(request.langConfig);
+        }
+    }
+
     default DetectRequest buildDetectRequest(TranslationData translationData) {
         final DetectRequest result = new DetectRequest();
         result.text = translationData.text;
         result.possibleLangs = translationData.langConfig.getHints();
+        result.priority = translationData.priority;
         return result;
     }
 
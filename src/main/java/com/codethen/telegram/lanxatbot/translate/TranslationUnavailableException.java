@@ -0,0 +1,12 @@
+package com.codethen.telegram.lanxatbot.translate;
+
+/**
+ * The translation was not attempted (or was abandoned) because the translation API
+ * is failing or overloaded. Retrying right away is not likely to help.
+ */
+public class TranslationUnavailableException extends TranslationException {
+
+    public TranslationUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,66 @@
+package com.codethen.translate;
+
+/**
+ * Limits the calls in flight to a backend, adjusting the limit to what the backend can sustain (AIMD).
+ *
+ * Calls over the limit are rejected. When a call fails or is slow, the backend is taken as congested
+ * and the limit is multiplied by the backoff ratio; when a call succeeds while the limit is being
+ * used (at least half of it in flight), the limit grows by one. So the limit keeps probing upwards
+ * and backs off quickly when the backend starts struggling.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long slowCallNanos;
+
+    // Guarded by this
+    private double limit;
+    private int inFlight;
+
+    /**
+     * @param backoffRatio between 0 and 1, applied to the limit on congestion
+     * @param slowCallMillis successful calls slower than this count as congestion
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long slowCallMillis) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.slowCallNanos = slowCallMillis * 1_000_000;
+    }
+
+    /** Returns false if the call must be rejected. Otherwise, {@link #release} must be called when it ends. */
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) return false;
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * @param nanos duration of the call
+     * @param failed whether the call failed; null if it says nothing about the backend (e.g. it was cancelled)
+     */
+    synchronized void release(long nanos, Boolean failed) {
+
+        final boolean wasUsed = inFlight * 2 >= (int) limit;
+        inFlight--;
+
+        if (failed == null) return;
+
+        if (failed || nanos > slowCallNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (wasUsed) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
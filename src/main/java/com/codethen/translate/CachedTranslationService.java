@@ -0,0 +1,102 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationKey;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Caches translations of the internal service, so repeated phrases don't call the translation API again.
+ * Entries are keyed by {@link TranslationKey}, so a cached result also saves the language detection.
+ *
+ * The async path doesn't wait for loads in progress (so each caller can cancel its own call):
+ * place a {@link CoalescingTranslationService} below this one, so concurrent misses of the same key
+ * share a single call to the translation API, as they do in {@link #translate}.
+ */
+public class CachedTranslationService implements TranslationService, MeterBinder {
+
+    private final Cache<TranslationKey, TranslationData> cache;
+    private final TranslationService internalService;
+
+    public CachedTranslationService(TranslationService internalService, long maximumSize, Duration expireAfterWrite) {
+
+        this.internalService = internalService;
+
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+
+        final TranslationKey key = TranslationKey.of(request);
+
+        try {
+            // Concurrent requests for the same key wait for the same load
+            return cache.get(key, () -> internalService.translate(key.toRequest(request.priority))).copy();
+        } catch (UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (ExecutionException e) {
+            throw new TranslationException("Error accessing translation cache for " + key, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+
+        final TranslationKey key = TranslationKey.of(request);
+
+        final TranslationData cached = cache.getIfPresent(key);
+        if (cached != null) return CompletableFuture.completedFuture(cached.copy());
+
+        // Concurrent misses of the same key are coalesced by the service below (see class comment)
+        final CompletableFuture<TranslationData> translating = internalService.translateAsync(key.toRequest(request.priority));
+
+        return Futures.propagateCancel(translating.thenApply(translation -> {
+            cache.put(key, translation);
+            return translation.copy();
+        }), translating);
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return internalService.detect(request);
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return internalService.detectAsync(request);
+    }
+
+    /** Hit, miss and eviction counters, to tune the cache size and expiration. */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    /** Cache metrics (gets, hits, evictions, size...) with cache="translations" */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        GuavaCacheMetrics.monitor(registry, cache, "translations");
+    }
+}
@@ -0,0 +1,126 @@
+package com.codethen.translate;
+
+/**
+ * Stops calls to a backend that is failing, so they fail fast instead of waiting for it.
+ *
+ * While closed, the outcome of the last calls is kept; when too many of them failed, the breaker opens
+ * and rejects all calls for a while. Then it's half-open: a few probe calls are let through,
+ * and if they succeed the breaker closes again, otherwise it opens again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int windowSize;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private final boolean[] failures;
+    private int outcomeCount;
+    private int nextOutcome;
+    private int failureCount;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    /**
+     * @param windowSize number of recent calls whose failure rate is checked
+     * @param minCalls calls needed in the window before the breaker can open
+     * @param openMillis time the breaker stays open before letting probes through
+     * @param halfOpenProbes successful probes needed to close the breaker
+     */
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRateThreshold, long openMillis, int halfOpenProbes) {
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openMillis * 1_000_000;
+        this.halfOpenProbes = halfOpenProbes;
+        this.failures = new boolean[windowSize];
+    }
+
+    /** Returns false if the call must be rejected. Otherwise, {@link #onResult} must be called when it ends. */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) return false;
+                transition(State.HALF_OPEN);
+                // Fall through to let this call be the first probe
+            case HALF_OPEN:
+                if (probesStarted >= halfOpenProbes) return false;
+                probesStarted++;
+                return true;
+            default:
+                throw new IllegalStateException("Unknown state: " + state);
+        }
+    }
+
+    /** Call when an acquired call ends. Cancelled calls should call {@link #onIgnored} instead. */
+    synchronized void onResult(boolean failed) {
+        switch (state) {
+            case CLOSED:
+                record(failed);
+                if (outcomeCount >= minCalls && (double) failureCount / outcomeCount >= failureRateThreshold) {
+                    transition(State.OPEN);
+                }
+                break;
+            case HALF_OPEN:
+                if (failed) {
+                    transition(State.OPEN);
+                } else if (++probesSucceeded >= halfOpenProbes) {
+                    transition(State.CLOSED);
+                }
+                break;
+            case OPEN:
+                break; // A call started before opening; it doesn't change anything
+        }
+    }
+
+    /** Call when an acquired call ends without telling anything about the backend (e.g. it was cancelled) */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) probesStarted--; // Let another probe in
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (outcomeCount == windowSize) {
+            if (failures[nextOutcome]) failureCount--;
+        } else {
+            outcomeCount++;
+        }
+        failures[nextOutcome] = failed;
+        if (failed) failureCount++;
+        nextOutcome = (nextOutcome + 1) % windowSize;
+    }
+
+    private void transition(State newState) {
+
+        System.out.println("Circuit breaker " + name + ": " + state + " -> " + newState);
+
+        state = newState;
+        switch (newState) {
+            case OPEN:
+                openedAt = System.nanoTime();
+                break;
+            case HALF_OPEN:
+                probesStarted = 0;
+                probesSucceeded = 0;
+                break;
+            case CLOSED:
+                outcomeCount = 0;
+                nextOutcome = 0;
+                failureCount = 0;
+                break;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationKey;
+import com.codethen.telegram.lanxatbot.translate.TranslationPriority;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Identical translations requested at the same time (same {@link TranslationKey}) share a single call
+ * to the internal service. Once that call completes, the next request calls the internal service again
+ * (caching results is the job of {@link CachedTranslationService}).
+ *
+ * Each caller gets its own future. Cancelling it doesn't affect the other callers,
+ * but when all of them have cancelled, the call to the internal service is cancelled too.
+ *
+ * The shared call has the priority of the request that started it. So high priority requests
+ * don't join low priority calls (they would wait as long, e.g. for the quota), but low priority
+ * requests join high priority calls.
+ */
+public class CoalescingTranslationService implements TranslationService {
+
+    private final TranslationService internalService;
+
+    /** Calls to the internal service that haven't completed yet, by priority */
+    private final Map<TranslationPriority, ConcurrentMap<TranslationKey, SharedCall>> inFlight =
+            new EnumMap<>(TranslationPriority.class);
+
+    public CoalescingTranslationService(TranslationService internalService) {
+        this.internalService = internalService;
+        for (TranslationPriority priority : TranslationPriority.values()) {
+            inFlight.put(priority, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+
+        final TranslationKey key = TranslationKey.of(request);
+
+        if (request.priority == TranslationPriority.LOW) {
+            final ConcurrentMap<TranslationKey, SharedCall> highCalls = inFlight.get(TranslationPriority.HIGH);
+            final SharedCall joined = highCalls.computeIfPresent(key, (k, existing) -> {
+                existing.callers++;
+                return existing;
+            });
+            if (joined != null) {
+                System.out.println("Joining high priority translation in flight: " + key);
+                return dependent(highCalls, key, joined);
+            }
+        }
+
+        final ConcurrentMap<TranslationKey, SharedCall> calls = inFlight.get(request.priority);
+        final SharedCall created = new SharedCall();
+
+        // The caller is counted atomically with the creation/removal of the entry
+        final SharedCall shared = calls.compute(key, (k, existing) -> {
+            final SharedCall call = existing != null ? existing : created;
+            call.callers++;
+            return call;
+        });
+
+        if (shared != created) {
+            System.out.println("Joining translation in flight: " + key);
+        } else {
+            final CompletableFuture<TranslationData> call;
+            try {
+                call = internalService.translateAsync(key.toRequest(request.priority));
+            } catch (RuntimeException e) {
+                // Otherwise the entry would stay, and the next identical requests would wait forever
+                calls.remove(key, created);
+                created.result.completeExceptionally(e);
+                return shared.result.thenApply(TranslationData::copy);
+            }
+            created.setCall(call);
+            call.whenComplete((translation, e) -> {
+                calls.remove(key, created);
+                if (e != null) {
+                    created.result.completeExceptionally(Futures.unwrap(e));
+                } else {
+                    created.result.complete(translation);
+                }
+            });
+        }
+
+        return dependent(calls, key, shared);
+    }
+
+    /** Callers get a dependent future, so one of them can't complete or cancel the shared one */
+    private static CompletableFuture<TranslationData> dependent(ConcurrentMap<TranslationKey, SharedCall> calls,
+                                                                TranslationKey key, SharedCall shared) {
+
+        final CompletableFuture<TranslationData> dependent = shared.result.thenApply(TranslationData::copy);
+
+        dependent.whenComplete((translation, e) -> {
+            if (!dependent.isCancelled()) return;
+            final boolean[] lastCaller = {false};
+            calls.computeIfPresent(key, (k, existing) -> {
+                if (existing != shared || --existing.callers > 0) return existing;
+                lastCaller[0] = true;
+                return null;
+            });
+            if (lastCaller[0]) {
+                System.out.println("Cancelling translation nobody waits for: " + key);
+                shared.cancel();
+            }
+        });
+
+        return dependent;
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return internalService.detect(request);
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return internalService.detectAsync(request);
+    }
+
+    /** Number of distinct translations waiting for the internal service */
+    public int getInFlightCount() {
+        return inFlight.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /** A call to the internal service, shared by the callers requesting the same translation */
+    private static class SharedCall {
+
+        final CompletableFuture<TranslationData> result = new CompletableFuture<>();
+
+        /** Callers that haven't cancelled; guarded by the inFlight map (only changed in compute methods) */
+        int callers;
+
+        // Guarded by this
+        private CompletableFuture<TranslationData> call;
+        private boolean cancelled;
+
+        synchronized void setCall(CompletableFuture<TranslationData> call) {
+            this.call = call;
+            if (cancelled) call.cancel(true); // All callers cancelled before the call started
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (call != null) call.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends translations to the primary service and, if it hasn't answered after a delay, also to the secondary one.
+ * The first successful answer wins and the other call is cancelled.
+ *
+ * The delay is a percentile of the recent primary latencies (between a minimum and a maximum),
+ * so only the slowest requests are hedged. If the primary fails before the delay, the secondary
+ * is called right away. Primaries cancelled after being hedged are sampled with the time they took
+ * until then (a lower bound), so the percentile doesn't drift down.
+ */
+public class HedgingTranslationService implements TranslationService {
+
+    /** Latencies kept to compute the percentile */
+    private static final int LATENCY_SAMPLES = 256;
+    /** Until there are this many samples, the maximum delay is used */
+    private static final int MIN_SAMPLES = 20;
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("translation-hedging-%d").setDaemon(true).build());
+
+    private final TranslationService primary;
+    private final TranslationService secondary;
+    private final double percentile;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private int nextLatency;
+
+    public HedgingTranslationService(TranslationService primary, TranslationService secondary,
+                                     double percentile, Duration minDelay, Duration maxDelay) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.percentile = percentile;
+        this.minDelayMillis = minDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+
+        final HedgedRequest hedged = new HedgedRequest(request);
+
+        hedged.primaryCall.whenComplete((translation, e) -> {
+            if (e == null) {
+                recordLatency(elapsedMillis(hedged.start));
+            } else if (hedged.primaryCall.isCancelled() && hedged.isHedged()) {
+                // It was slower than the delay, and would have taken at least this long. Without these samples,
+                // the slow tail would be missing and the percentile would keep decreasing.
+                recordLatency(elapsedMillis(hedged.start));
+            } else {
+                hedged.startSecondary(); // Don't wait for the delay if the primary failed
+            }
+            hedged.complete(translation, e);
+        });
+
+        if (!hedged.result.isDone()) {
+            timer.schedule(hedged::startSecondary, hedgeDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        return hedged.result;
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return primary.detect(request);
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return primary.detectAsync(request);
+    }
+
+    long hedgeDelayMillis() {
+
+        final long[] samples;
+        synchronized (latencies) {
+            if (latencyCount < MIN_SAMPLES) return maxDelayMillis;
+            samples = Arrays.copyOf(latencies, latencyCount);
+        }
+
+        Arrays.sort(samples);
+        final int index = (int) Math.ceil(percentile / 100 * samples.length) - 1;
+        final long delay = samples[Math.max(0, Math.min(index, samples.length - 1))];
+        return Math.max(minDelayMillis, Math.min(maxDelayMillis, delay));
+    }
+
+    private void recordLatency(long millis) {
+        synchronized (latencies) {
+            latencies[nextLatency] = millis;
+            nextLatency = (nextLatency + 1) % LATENCY_SAMPLES;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /** State of one translation sent to one or both services */
+    private class HedgedRequest {
+
+        final TranslationData request;
+        final long start = System.nanoTime();
+        final CompletableFuture<TranslationData> result = new CompletableFuture<>();
+        final CompletableFuture<TranslationData> primaryCall;
+
+        // Guarded by this
+        CompletableFuture<TranslationData> secondaryCall;
+        int pendingCalls = 1;
+
+        HedgedRequest(TranslationData request) {
+
+            this.request = request;
+            this.primaryCall = primary.translateAsync(request);
+
+            // When there's a winner (or the caller cancels), the other call is not needed anymore
+            result.whenComplete((translation, e) -> {
+                primaryCall.cancel(true);
+                synchronized (this) {
+                    if (secondaryCall != null) secondaryCall.cancel(true);
+                }
+            });
+        }
+
+        void startSecondary() {
+
+            synchronized (this) {
+                if (result.isDone() || secondaryCall != null) return;
+                pendingCalls++;
+                secondaryCall = new CompletableFuture<>(); // Placeholder, so it's only started once
+            }
+
+            System.out.println("Hedging translation after " + elapsedMillis(start) + " ms: '" + request.text + "'");
+
+            final CompletableFuture<TranslationData> call = secondary.translateAsync(request);
+            synchronized (this) {
+                secondaryCall = call;
+            }
+            if (result.isDone()) call.cancel(true);
+
+            call.whenComplete(this::complete);
+        }
+
+        synchronized boolean isHedged() {
+            return secondaryCall != null;
+        }
+
+        /** Completes with the first success, or with the last error if all calls failed */
+        synchronized void complete(TranslationData translation, Throwable e) {
+            pendingCalls--;
+            if (e == null) {
+                result.complete(translation);
+            } else if (pendingCalls == 0) {
+                result.completeExceptionally(Futures.unwrap(e));
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.codethen.translate;
+
+import com.codethen.detect.NgramLanguageDetector;
+import com.codethen.detect.NgramLanguageDetector.Detection;
+import com.codethen.metrics.Timings;
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects languages locally with a {@link NgramLanguageDetector}, and only asks the internal service
+ * when the local detection is not confident enough. That includes when there are no hints,
+ * or some of them are languages without profile, see {@link NgramLanguageDetector#detect}.
+ *
+ * For translations that need detection, the detected language is set in the request
+ * (as {@link TranslationService#langConfigToUse} would do), so the internal service translates directly.
+ *
+ * Local detections are timed in "lanxat.detect.local", tagged with whether they were confident
+ * (otherwise the internal service detects, see {@link MeteredTranslationService}).
+ */
+public class LocalDetectTranslationService implements TranslationService {
+
+    private final TranslationService internalService;
+    private final NgramLanguageDetector detector;
+    private final double minConfidence;
+    private final Timer confidentTimer;
+    private final Timer notConfidentTimer;
+
+    public LocalDetectTranslationService(TranslationService internalService, NgramLanguageDetector detector, double minConfidence,
+                                         MeterRegistry registry) {
+        this.internalService = internalService;
+        this.detector = detector;
+        this.minConfidence = minConfidence;
+        this.confidentTimer = Timings.timer(registry, "lanxat.detect.local", Tags.of("confident", "true"));
+        this.notConfidentTimer = Timings.timer(registry, "lanxat.detect.local", Tags.of("confident", "false"));
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return internalService.translate(resolveLangConfig(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+        return internalService.translateAsync(resolveLangConfig(request));
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        final DetectResponse local = detectLocally(request.text, request.possibleLangs);
+        return local != null ? local : internalService.detect(request);
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        final DetectResponse local = detectLocally(request.text, request.possibleLangs);
+        return local != null ? CompletableFuture.completedFuture(local) : internalService.detectAsync(request);
+    }
+
+    /** Returns the request with the detected language, or the same request if the detection is not confident. */
+    private TranslationData resolveLangConfig(TranslationData request) {
+
+        if (!request.langConfig.shouldDetectLang()) return request;
+
+        final DetectResponse detected = detectLocally(request.text, request.langConfig.getHints());
+        if (detected == null) return request;
+
+        final TranslationData result = new TranslationData();
+        result.text = request.text;
+        result.langConfig = new LangConfig(null, detected.langs.get(0), decideLangTo(detected, request.langConfig));
+        result.priority = request.priority;
+        return result;
+    }
+
+    /** Returns null if the detection is not confident enough */
+    private DetectResponse detectLocally(String text, List<String> possibleLangs) {
+
+        final long start = System.nanoTime();
+        final Detection detection = detector.detect(text, possibleLangs);
+        final boolean confident = detection.lang != null && detection.confidence >= minConfidence;
+        (confident ? confidentTimer : notConfidentTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (!confident) {
+            System.out.println("Local detection not confident: " + detection + " for '" + text + "'");
+            return null;
+        }
+
+        System.out.println("Detected language locally: " + detection);
+        return new DetectResponse(List.of(detection.lang));
+    }
+}
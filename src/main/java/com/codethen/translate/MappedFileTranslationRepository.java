@@ -0,0 +1,542 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationKey;
+import com.codethen.telegram.lanxatbot.translate.TranslationRepository;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Stores translations in memory-mapped files, so they live off the Java heap and survive restarts
+ * without depending on a database. There are two files in the given directory:
+ *
+ * - The log ({@value #LOG_FILE}), where records are only appended. Each record is
+ *   [length, hash of the {@link TranslationKey}, source, target, from, to, CRC32].
+ *   The length is written last, so a record interrupted by a crash is just ignored.
+ * - The index ({@value #INDEX_FILE}), an open-addressing hash table (linear probing)
+ *   from the key hash to the record position in the log.
+ *
+ * When opening, the index is used if it belongs to the log (same generation), and records appended
+ * after the last indexed one are recovered. Otherwise the index is rebuilt by scanning the log.
+ * When a key is saved again, the old record becomes dead; when the log is full and there are enough
+ * dead bytes, it's compacted by copying the live records to a new log.
+ *
+ * Reads happen in the calling thread (they don't do I/O besides page faults), writes in a background thread.
+ */
+public class MappedFileTranslationRepository implements TranslationRepository, Closeable {
+
+    static final String LOG_FILE = "translations.log";
+    static final String INDEX_FILE = "translations.idx";
+
+    private static final int LOG_MAGIC = 0x4C58544C; // LXTL
+    private static final int INDEX_MAGIC = 0x4C585449; // LXTI
+
+    /** magic (int), unused (int), generation (long) */
+    private static final int LOG_HEADER_SIZE = 16;
+    /** length (int), hash (2 longs), then the payload and the CRC (int) */
+    private static final int RECORD_HEADER_SIZE = 20;
+    private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + 4;
+
+    /** magic, capacity, count, logEnd (ints), deadBytes, generation (longs) */
+    private static final int INDEX_HEADER_SIZE = 32;
+    /** hash (2 longs), record position + 1 (int, 0 means empty), unused (int) */
+    private static final int SLOT_SIZE = 24;
+    private static final double MAX_LOAD = 0.7;
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final int initialLogSize;
+    private final int maxLogSize;
+    private final int initialIndexCapacity;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("translation-file-writer-%d").setDaemon(true).build());
+
+    // Guarded by lock
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private long generation;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int count;
+    private int logEnd;
+    private long deadBytes;
+
+    /**
+     * @param maxLogSize the log can't grow beyond this (at most 2GB, since it's mapped in one buffer).
+     *                   When it's full and compaction doesn't help, new translations are not stored.
+     */
+    public MappedFileTranslationRepository(Path directory, int initialLogSize, int maxLogSize, int initialIndexCapacity) {
+
+        this.logPath = directory.resolve(LOG_FILE);
+        this.indexPath = directory.resolve(INDEX_FILE);
+        this.initialLogSize = Math.max(initialLogSize, LOG_HEADER_SIZE);
+        this.maxLogSize = maxLogSize;
+        this.initialIndexCapacity = Integer.highestOneBit(Math.max(initialIndexCapacity, 16) - 1) << 1;
+
+        try {
+            Files.createDirectories(directory);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open translation files in " + directory, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> find(TranslationKey key) {
+
+        final long[] hash = hashOf(key);
+
+        lock.readLock().lock();
+        try {
+            final int position = findRecord(hash[0], hash[1]);
+            if (position < 0) return CompletableFuture.completedFuture(null);
+
+            final String[] fields = readFields(position);
+            if (!key.getText().equals(fields[0])) return CompletableFuture.completedFuture(null); // hash collision
+
+            final TranslationData result = new TranslationData();
+            result.text = fields[1];
+            result.langConfig = new LangConfig(null, fields[2], fields[3]);
+            return CompletableFuture.completedFuture(result);
+
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(TranslationKey key, TranslationData translation) {
+        writer.execute(() -> {
+            try {
+                append(key, translation);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /** Waits for the saves requested until now */
+    void flush() {
+        try {
+            writer.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getCount() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Copies the live records to a new log, removing the dead ones. */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            doCompact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Waits for pending writes and flushes the files to disk */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            log.force();
+            index.force();
+            logChannel.close();
+            indexChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ----- Opening and recovery -----
+
+    private void open() throws IOException {
+
+        Files.deleteIfExists(tempPath(logPath));
+        Files.deleteIfExists(tempPath(indexPath));
+
+        logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final boolean newLog = logChannel.size() < LOG_HEADER_SIZE;
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(initialLogSize, (int) logChannel.size()));
+
+        if (newLog || log.getInt(0) != LOG_MAGIC) {
+            generation = ThreadLocalRandom.current().nextLong();
+            log.putInt(0, LOG_MAGIC);
+            log.putLong(8, generation);
+        } else {
+            generation = log.getLong(8);
+        }
+
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (indexBelongsToLog()) {
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+            capacity = index.getInt(4);
+            count = index.getInt(8);
+            logEnd = index.getInt(12);
+            deadBytes = index.getLong(16);
+            final int recovered = indexRecords(logEnd);
+            System.out.println("Opened translation files with " + count + " translations (" + recovered + " recovered from log)");
+        } else {
+            System.out.println("Rebuilding translation index from log " + logPath);
+            resetIndex(initialIndexCapacity);
+            logEnd = LOG_HEADER_SIZE;
+            deadBytes = 0;
+            indexRecords(LOG_HEADER_SIZE);
+            System.out.println("Rebuilt translation index with " + count + " translations");
+        }
+    }
+
+    private boolean indexBelongsToLog() throws IOException {
+
+        if (indexChannel.size() < INDEX_HEADER_SIZE) return false;
+
+        final ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+        indexChannel.read(header, 0);
+
+        final int indexCapacity = header.getInt(4);
+        final int indexLogEnd = header.getInt(12);
+
+        return header.getInt(0) == INDEX_MAGIC
+                && header.getLong(24) == generation
+                && Integer.bitCount(indexCapacity) == 1
+                && indexChannel.size() >= INDEX_HEADER_SIZE + (long) indexCapacity * SLOT_SIZE
+                && indexLogEnd >= LOG_HEADER_SIZE && indexLogEnd <= log.capacity();
+    }
+
+    /** Indexes the valid records from the given position, and returns how many there were. */
+    private int indexRecords(int from) {
+
+        int position = from;
+        int indexed = 0;
+
+        while (true) {
+            final int size = validRecordSize(position);
+            if (size < 0) break;
+            putInIndex(log.getLong(position + 4), log.getLong(position + 12), position);
+            position += size;
+            indexed++;
+        }
+
+        setLogEnd(position);
+        return indexed;
+    }
+
+    /** Returns the size of the record at the given position, or -1 if there's no valid record there. */
+    private int validRecordSize(int position) {
+
+        if (position + RECORD_OVERHEAD > log.capacity()) return -1;
+
+        final int payloadLength = log.getInt(position);
+        if (payloadLength <= 0 || position + RECORD_OVERHEAD + payloadLength > log.capacity()) return -1;
+
+        final int crcPosition = position + RECORD_HEADER_SIZE + payloadLength;
+        if (crcOf(position + 4, crcPosition) != log.getInt(crcPosition)) return -1;
+
+        return RECORD_OVERHEAD + payloadLength;
+    }
+
+    // ----- Writing -----
+
+    private void append(TranslationKey key, TranslationData translation) throws IOException {
+
+        final long[] hash = hashOf(key);
+        final byte[] payload = encodeFields(key.getText(), translation.text,
+                translation.langConfig.getFrom(), translation.langConfig.getTo());
+        final int size = RECORD_OVERHEAD + payload.length;
+
+        lock.writeLock().lock();
+        try {
+            if (!ensureLogSpace(size)) {
+                System.out.println("Translation log is full, not storing: " + key);
+                return;
+            }
+
+            final int position = logEnd;
+            log.putLong(position + 4, hash[0]);
+            log.putLong(position + 12, hash[1]);
+            log.put(position + RECORD_HEADER_SIZE, payload);
+            log.putInt(position + RECORD_HEADER_SIZE + payload.length, crcOf(position + 4, position + RECORD_HEADER_SIZE + payload.length));
+            log.putInt(position, payload.length); // Last, so the record is only valid when complete
+
+            putInIndex(hash[0], hash[1], position);
+            setLogEnd(position + size);
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Makes room for a record, growing or compacting the log. Returns false if it's not possible. */
+    private boolean ensureLogSpace(int size) throws IOException {
+
+        if (logEnd + size <= log.capacity()) return true;
+
+        if (deadBytes > (logEnd - LOG_HEADER_SIZE) / 2) {
+            doCompact();
+            if (logEnd + size <= log.capacity()) return true;
+        }
+
+        final long newCapacity = Math.min((long) maxLogSize, Math.max(2L * log.capacity(), (long) logEnd + size));
+        if (logEnd + size > newCapacity) return false;
+
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
+        return true;
+    }
+
+    private void doCompact() throws IOException {
+
+        System.out.println("Compacting translation log: " + count + " translations, " + deadBytes + " dead bytes");
+
+        final Path tempLogPath = tempPath(logPath);
+        final long newGeneration = ThreadLocalRandom.current().nextLong();
+        final int liveBytes = logEnd - LOG_HEADER_SIZE - (int) deadBytes;
+
+        final FileChannel tempChannel = FileChannel.open(tempLogPath,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // New record positions (+ 1) of each slot. The index keeps pointing to the current log until it's replaced.
+        final int[] newPositions = new int[capacity];
+        final MappedByteBuffer tempLog;
+        int position = LOG_HEADER_SIZE;
+
+        try {
+            tempLog = tempChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(initialLogSize, Math.min(maxLogSize, 2L * (LOG_HEADER_SIZE + liveBytes))));
+            tempLog.putInt(0, LOG_MAGIC);
+            tempLog.putLong(8, newGeneration);
+
+            for (int slot = 0; slot < capacity; slot++) {
+                final int recordPosition = index.getInt(slotPosition(slot) + 16) - 1;
+                if (recordPosition < 0) continue;
+
+                final int size = RECORD_OVERHEAD + log.getInt(recordPosition);
+                tempLog.put(position, log, recordPosition, size);
+                newPositions[slot] = position + 1;
+                position += size;
+            }
+
+            tempLog.force();
+            Files.move(tempLogPath, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException | RuntimeException e) {
+            // The current log and index are untouched
+            tempChannel.close();
+            Files.deleteIfExists(tempLogPath);
+            throw e;
+        }
+
+        logChannel.close();
+        logChannel = tempChannel;
+        log = tempLog;
+
+        // A crash before the generation is written leaves an index with the old one, so it would be rebuilt
+        for (int slot = 0; slot < capacity; slot++) {
+            if (newPositions[slot] != 0) index.putInt(slotPosition(slot) + 16, newPositions[slot]);
+        }
+        deadBytes = 0;
+        index.putLong(16, deadBytes);
+        setLogEnd(position);
+        generation = newGeneration;
+        index.putLong(24, generation);
+        index.force();
+    }
+
+    private void setLogEnd(int position) {
+        logEnd = position;
+        index.putInt(12, logEnd);
+    }
+
+    // ----- Index -----
+
+    private void resetIndex(int newCapacity) throws IOException {
+        indexChannel.truncate(0);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+        capacity = newCapacity;
+        count = 0;
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, capacity);
+        index.putInt(8, count);
+        index.putLong(16, 0);
+        index.putLong(24, generation);
+    }
+
+    /** Returns the position of the record with the hash, or -1 if not found */
+    private int findRecord(long hash1, long hash2) {
+
+        final int mask = capacity - 1;
+        for (int slot = (int) hash1 & mask; ; slot = (slot + 1) & mask) {
+            final int slotPosition = slotPosition(slot);
+            final int recordPosition = index.getInt(slotPosition + 16) - 1;
+            if (recordPosition < 0) return -1;
+            if (index.getLong(slotPosition) == hash1 && index.getLong(slotPosition + 8) == hash2) return recordPosition;
+        }
+    }
+
+    private void putInIndex(long hash1, long hash2, int recordPosition) {
+
+        if (count + 1 > capacity * MAX_LOAD) growIndex();
+
+        final int mask = capacity - 1;
+        for (int slot = (int) hash1 & mask; ; slot = (slot + 1) & mask) {
+            final int slotPosition = slotPosition(slot);
+            final int existing = index.getInt(slotPosition + 16) - 1;
+
+            if (existing < 0) {
+                index.putLong(slotPosition, hash1);
+                index.putLong(slotPosition + 8, hash2);
+                index.putInt(slotPosition + 16, recordPosition + 1);
+                index.putInt(8, ++count);
+                return;
+            }
+
+            if (index.getLong(slotPosition) == hash1 && index.getLong(slotPosition + 8) == hash2) {
+                deadBytes += RECORD_OVERHEAD + log.getInt(existing);
+                index.putLong(16, deadBytes);
+                index.putInt(slotPosition + 16, recordPosition + 1);
+                return;
+            }
+        }
+    }
+
+    /** Rebuilds the index with double capacity, in a new file that replaces the current one */
+    private void growIndex() {
+
+        final int newCapacity = capacity * 2;
+        final Path tempIndexPath = tempPath(indexPath);
+
+        try {
+            final FileChannel newChannel = FileChannel.open(tempIndexPath,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final MappedByteBuffer newIndex = newChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    INDEX_HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+
+            final int newMask = newCapacity - 1;
+            for (int slot = 0; slot < capacity; slot++) {
+                final int slotPosition = slotPosition(slot);
+                final int recordPosition = index.getInt(slotPosition + 16);
+                if (recordPosition == 0) continue;
+
+                final long hash1 = index.getLong(slotPosition);
+                int newSlot = (int) hash1 & newMask;
+                while (newIndex.getInt(INDEX_HEADER_SIZE + newSlot * SLOT_SIZE + 16) != 0) newSlot = (newSlot + 1) & newMask;
+
+                final int newSlotPosition = INDEX_HEADER_SIZE + newSlot * SLOT_SIZE;
+                newIndex.putLong(newSlotPosition, hash1);
+                newIndex.putLong(newSlotPosition + 8, index.getLong(slotPosition + 8));
+                newIndex.putInt(newSlotPosition + 16, recordPosition);
+            }
+
+            newIndex.putInt(0, INDEX_MAGIC);
+            newIndex.putInt(4, newCapacity);
+            newIndex.putInt(8, count);
+            newIndex.putInt(12, logEnd);
+            newIndex.putLong(16, deadBytes);
+            newIndex.putLong(24, generation);
+            newIndex.force();
+
+            indexChannel.close();
+            Files.move(tempIndexPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            indexChannel = newChannel;
+            index = newIndex;
+            capacity = newCapacity;
+
+        } catch (IOException e) {
+            throw new TranslationException("Could not grow translation index", e);
+        }
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // ----- Encoding -----
+
+    private static long[] hashOf(TranslationKey key) {
+        final ByteBuffer bytes = ByteBuffer.wrap(key.hash().asBytes());
+        return new long[] { bytes.getLong(), bytes.getLong() };
+    }
+
+    private int crcOf(int from, int to) {
+        final CRC32 crc = new CRC32();
+        crc.update(log.slice(from, to - from));
+        return (int) crc.getValue();
+    }
+
+    /** Each field is its length (int) and its UTF-8 bytes */
+    private static byte[] encodeFields(String... fields) {
+
+        final byte[][] encoded = new byte[fields.length][];
+        int size = 0;
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = String.valueOf(fields[i]).getBytes(StandardCharsets.UTF_8);
+            size += 4 + encoded[i].length;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] field : encoded) buffer.putInt(field.length).put(field);
+        return buffer.array();
+    }
+
+    /** Returns source, target, from, to */
+    private String[] readFields(int recordPosition) {
+
+        final String[] fields = new String[4];
+        int position = recordPosition + RECORD_HEADER_SIZE;
+        for (int i = 0; i < fields.length; i++) {
+            final int length = log.getInt(position);
+            final byte[] bytes = new byte[length];
+            log.get(position + 4, bytes);
+            fields[i] = new String(bytes, StandardCharsets.UTF_8);
+            position += 4 + length;
+        }
+        return fields;
+    }
+
+    private static Path tempPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+}
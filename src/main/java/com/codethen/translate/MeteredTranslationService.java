@@ -0,0 +1,53 @@
+package com.codethen.translate;
+
+import com.codethen.metrics.OutcomeTimer;
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times the calls to a translation API, in the timer "lanxat.provider" tagged with the provider name,
+ * the operation (translate or detect) and the outcome. Detections done by the API as part of a translation
+ * are included in the translation time.
+ */
+public class MeteredTranslationService implements TranslationService {
+
+    private static final String TIMER = "lanxat.provider";
+
+    private final TranslationService internalService;
+    private final OutcomeTimer translateTimer;
+    private final OutcomeTimer detectTimer;
+
+    public MeteredTranslationService(String name, TranslationService internalService, MeterRegistry registry) {
+        this.internalService = internalService;
+        this.translateTimer = new OutcomeTimer(registry, TIMER, Tags.of("provider", name, "operation", "translate"));
+        this.detectTimer = new OutcomeTimer(registry, TIMER, Tags.of("provider", name, "operation", "detect"));
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+        return translateTimer.time(internalService.translateAsync(request));
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return Futures.join(detectAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return detectTimer.time(internalService.detectAsync(request));
+    }
+}
@@ -0,0 +1,57 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationEntry;
+import com.codethen.telegram.lanxatbot.translate.TranslationKey;
+import com.codethen.telegram.lanxatbot.translate.TranslationRepository;
+import com.mongodb.reactivestreams.client.MongoClient;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Translations are stored by {@link TranslationKey#hash()} as id,
+ * so a lookup is a single read by the (always indexed) _id.
+ */
+public class MongoTranslationRepository implements TranslationRepository {
+
+    private static final String COLLECTION_NAME = "translations";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public MongoTranslationRepository(MongoClient mongoClient, String databaseName) {
+        mongoTemplate = new ReactiveMongoTemplate(mongoClient, databaseName);
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> find(TranslationKey key) {
+
+        return mongoTemplate.findById(key.hash().toString(), TranslationEntry.class, COLLECTION_NAME)
+                .toFuture()
+                .thenApply(entry -> {
+                    if (entry == null || !key.getText().equals(entry.getSource())) return null;
+                    final TranslationData result = new TranslationData();
+                    result.text = entry.getTarget();
+                    result.langConfig = new LangConfig(null, entry.getFrom(), entry.getTo());
+                    return result;
+                });
+    }
+
+    /** The write is not awaited, errors are just logged. */
+    @Override
+    public void save(TranslationKey key, TranslationData translation) {
+
+        final TranslationEntry entry = new TranslationEntry(
+                key.hash().toString(),
+                new Date(),
+                key.getText(),
+                translation.text,
+                translation.langConfig.getFrom(),
+                translation.langConfig.getTo());
+
+        mongoTemplate.save(entry, COLLECTION_NAME)
+                .subscribe(null, Throwable::printStackTrace);
+    }
+}
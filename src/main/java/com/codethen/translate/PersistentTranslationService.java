@@ -0,0 +1,66 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationKey;
+import com.codethen.telegram.lanxatbot.translate.TranslationRepository;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Second level cache: looks for the translation in a {@link TranslationRepository} before calling
+ * the internal service, and stores the new translations there.
+ * It's meant to be behind a {@link CachedTranslationService}, so the cache is not cold after a restart.
+ *
+ * If the repository fails, the translation goes on with the internal service.
+ */
+public class PersistentTranslationService implements TranslationService {
+
+    private final TranslationService internalService;
+    private final TranslationRepository repository;
+
+    public PersistentTranslationService(TranslationService internalService, TranslationRepository repository) {
+        this.internalService = internalService;
+        this.repository = repository;
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+
+        final TranslationKey key = TranslationKey.of(request);
+
+        final CompletableFuture<TranslationData> stored = repository.find(key)
+                .exceptionally(e -> {
+                    System.out.println("Could not read stored translation for " + key + ": " + Futures.unwrap(e));
+                    return null;
+                });
+
+        return Futures.thenCompose(stored, translation -> {
+            if (translation != null) return CompletableFuture.completedFuture(translation);
+            final CompletableFuture<TranslationData> translating = internalService.translateAsync(key.toRequest(request.priority));
+            return Futures.propagateCancel(translating.thenApply(t -> {
+                repository.save(key, t);
+                return t;
+            }), translating);
+        });
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return internalService.detect(request);
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return internalService.detectAsync(request);
+    }
+}
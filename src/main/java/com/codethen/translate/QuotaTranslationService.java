@@ -0,0 +1,247 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationPriority;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+import com.codethen.telegram.lanxatbot.translate.TranslationUnavailableException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the calls to a translation API within its quota of characters and requests per minute,
+ * so we use all of it without getting "too many requests" errors.
+ *
+ * Calls that don't fit in the remaining budget wait in a queue until it refills. High priority calls
+ * go first, and low priority calls leave part of the budget (the reserve) for them, so inline queries
+ * get through while bot messages wait. Calls that would wait too long, or that don't fit in the queue,
+ * fail with a {@link TranslationUnavailableException}.
+ *
+ * Each call counts as a request, even if the API client batches several of them in one.
+ */
+public class QuotaTranslationService implements TranslationService {
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("translation-quota-%d").setDaemon(true).build());
+
+    private final String name;
+    private final TranslationService internalService;
+    private final double lowPriorityReserve;
+    private final long highMaxWaitNanos;
+    private final long lowMaxWaitNanos;
+    private final int maxQueued;
+
+    // Guarded by this
+    private final TokenBucket chars;
+    private final TokenBucket requests;
+    private final Deque<Pending<?>> highQueue = new ArrayDeque<>();
+    private final Deque<Pending<?>> lowQueue = new ArrayDeque<>();
+    private ScheduledFuture<?> scheduledDrain;
+    private long scheduledDrainAt;
+
+    /**
+     * @param lowPriorityReserve fraction of the budget that low priority calls can't use
+     * @param maxQueued calls that can wait (of any priority); more are rejected
+     */
+    public QuotaTranslationService(String name, TranslationService internalService,
+                                   long charsPerMinute, long requestsPerMinute, double lowPriorityReserve,
+                                   Duration highMaxWait, Duration lowMaxWait, int maxQueued) {
+        this.name = name;
+        this.internalService = internalService;
+        this.chars = new TokenBucket(charsPerMinute, TimeUnit.MINUTES.toNanos(1));
+        this.requests = new TokenBucket(requestsPerMinute, TimeUnit.MINUTES.toNanos(1));
+        this.lowPriorityReserve = lowPriorityReserve;
+        this.highMaxWaitNanos = highMaxWait.toNanos();
+        this.lowMaxWaitNanos = lowMaxWait.toNanos();
+        this.maxQueued = maxQueued;
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+        return submit(request.priority, request.text.length(), () -> internalService.translateAsync(request));
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return Futures.join(detectAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return submit(request.priority, request.text.length(), () -> internalService.detectAsync(request));
+    }
+
+    /** Characters that can be sent right now */
+    public synchronized long getRemainingChars() {
+        return (long) chars.available(System.nanoTime());
+    }
+
+    /** Requests that can be sent right now */
+    public synchronized long getRemainingRequests() {
+        return (long) requests.available(System.nanoTime());
+    }
+
+    public synchronized int getQueued() {
+        return highQueue.size() + lowQueue.size();
+    }
+
+    private <T> CompletableFuture<T> submit(TranslationPriority priority, int length, Supplier<CompletableFuture<T>> call) {
+
+        // A text longer than the whole budget can only be sent when the budget is full
+        final Pending<T> pending = new Pending<>(priority, Math.min(length, chars.getCapacity()), call);
+
+        synchronized (this) {
+            final long now = System.nanoTime();
+            final Deque<Pending<?>> queue = queueOf(priority);
+            final boolean nobodyAhead = queue.isEmpty() && (priority == TranslationPriority.HIGH || highQueue.isEmpty());
+
+            if (nobodyAhead && fits(pending, now)) {
+                take(pending, now);
+            } else if (getQueued() >= maxQueued) {
+                return CompletableFuture.failedFuture(new TranslationUnavailableException(
+                        "Too many translations waiting for the " + name + " quota, try again later"));
+            } else {
+                pending.deadline = now + (priority == TranslationPriority.HIGH ? highMaxWaitNanos : lowMaxWaitNanos);
+                queue.add(pending);
+                scheduleDrain(now);
+                return pending.result;
+            }
+        }
+
+        pending.start();
+        return pending.result;
+    }
+
+    /** Starts the queued calls that fit in the budget now, and rejects the ones that waited too long */
+    private void drain() {
+
+        final List<Pending<?>> toStart = new ArrayList<>();
+
+        synchronized (this) {
+            scheduledDrain = null;
+            final long now = System.nanoTime();
+
+            removeExpired(highQueue, now);
+            removeExpired(lowQueue, now);
+
+            for (Deque<Pending<?>> queue : List.of(highQueue, lowQueue)) {
+                while (!queue.isEmpty() && fits(queue.peek(), now)) {
+                    final Pending<?> pending = queue.poll();
+                    take(pending, now);
+                    toStart.add(pending);
+                }
+                if (!queue.isEmpty()) break; // Low priority calls wait until all the high priority ones started
+            }
+
+            scheduleDrain(now);
+        }
+
+        toStart.forEach(Pending::start);
+    }
+
+    private void removeExpired(Deque<Pending<?>> queue, long now) {
+        for (Iterator<Pending<?>> it = queue.iterator(); it.hasNext(); ) {
+            final Pending<?> pending = it.next();
+            if (pending.result.isDone()) {
+                it.remove(); // Cancelled by the caller
+            } else if (now - pending.deadline >= 0) {
+                it.remove();
+                pending.result.completeExceptionally(new TranslationUnavailableException(
+                        "Translation quota of " + name + " exhausted, try again later"));
+            }
+        }
+    }
+
+    /** Schedules a drain when the first queued call fits in the budget, or the first one expires */
+    private void scheduleDrain(long now) {
+
+        final Pending<?> head = !highQueue.isEmpty() ? highQueue.peek() : lowQueue.peek();
+        if (head == null) return;
+
+        long at = now + nanosUntilFits(head, now);
+        for (Pending<?> pending : highQueue) at = Math.min(at, pending.deadline);
+        for (Pending<?> pending : lowQueue) at = Math.min(at, pending.deadline);
+
+        if (scheduledDrain != null) {
+            if (at - scheduledDrainAt >= 0) return; // Already scheduled early enough
+            scheduledDrain.cancel(false);
+        }
+
+        scheduledDrainAt = at;
+        scheduledDrain = timer.schedule(this::drain, Math.max(0, at - now), TimeUnit.NANOSECONDS);
+    }
+
+    private boolean fits(Pending<?> pending, long now) {
+        return nanosUntilFits(pending, now) == 0;
+    }
+
+    private long nanosUntilFits(Pending<?> pending, long now) {
+        final double reserve = pending.priority == TranslationPriority.LOW ? lowPriorityReserve : 0;
+        final double neededChars = Math.min(pending.chars + reserve * chars.getCapacity(), chars.getCapacity());
+        final double neededRequests = Math.min(1 + reserve * requests.getCapacity(), requests.getCapacity());
+        return Math.max(chars.nanosUntil(neededChars, now), requests.nanosUntil(neededRequests, now));
+    }
+
+    private void take(Pending<?> pending, long now) {
+        chars.take(pending.chars, now);
+        requests.take(1, now);
+    }
+
+    private Deque<Pending<?>> queueOf(TranslationPriority priority) {
+        return priority == TranslationPriority.LOW ? lowQueue : highQueue;
+    }
+
+    /** A call, waiting for budget or already started */
+    private static class Pending<T> {
+
+        final TranslationPriority priority;
+        final double chars;
+        final Supplier<CompletableFuture<T>> call;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        long deadline;
+
+        Pending(TranslationPriority priority, double chars, Supplier<CompletableFuture<T>> call) {
+            this.priority = priority;
+            this.chars = chars;
+            this.call = call;
+        }
+
+        void start() {
+
+            if (result.isDone()) return; // Cancelled while waiting; its budget is lost, as with a sent call
+
+            final CompletableFuture<T> started;
+            try {
+                started = call.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            started.whenComplete((r, e) -> {
+                if (e == null) result.complete(r); else result.completeExceptionally(Futures.unwrap(e));
+            });
+            Futures.propagateCancel(result, started);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+import com.codethen.telegram.lanxatbot.translate.TranslationUnavailableException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Protects a translation backend and its callers from each other when the backend has problems.
+ *
+ * Calls are rejected right away with a {@link TranslationUnavailableException} when the
+ * {@link CircuitBreaker} is open or when there are already as many calls in flight as the
+ * {@link AdaptiveConcurrencyLimit} allows. Calls taking longer than the timeout are cancelled.
+ * So during an incident requests fail fast instead of piling up.
+ */
+public class ResilientTranslationService implements TranslationService {
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("translation-timeout-%d").setDaemon(true).build());
+
+    private final String name;
+    private final TranslationService internalService;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final long timeoutMillis;
+
+    public ResilientTranslationService(String name, TranslationService internalService,
+                                       CircuitBreaker circuitBreaker, AdaptiveConcurrencyLimit concurrencyLimit,
+                                       Duration timeout) {
+        this.name = name;
+        this.internalService = internalService;
+        this.circuitBreaker = circuitBreaker;
+        this.concurrencyLimit = concurrencyLimit;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+        return call(() -> internalService.translateAsync(request));
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return Futures.join(detectAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return call(() -> internalService.detectAsync(request));
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    private <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> supplier) {
+
+        if (!circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new TranslationUnavailableException(
+                    "Translation API " + name + " is failing, try again later"));
+        }
+
+        if (!concurrencyLimit.tryAcquire()) {
+            circuitBreaker.onIgnored();
+            return CompletableFuture.failedFuture(new TranslationUnavailableException(
+                    "Translation API " + name + " is overloaded, try again later"));
+        }
+
+        final long start = System.nanoTime();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        final CompletableFuture<T> call = start(supplier);
+
+        final ScheduledFuture<?> timeout = timer.schedule(() -> {
+            if (result.completeExceptionally(new TranslationUnavailableException(
+                    "Translation API " + name + " didn't answer in " + timeoutMillis + " ms"))) {
+                call.cancel(true);
+                release(start, true);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        call.whenComplete((r, e) -> {
+            timeout.cancel(false);
+            final boolean completed = e == null ? result.complete(r) : result.completeExceptionally(Futures.unwrap(e));
+            if (completed) release(start, e == null ? Boolean.FALSE : call.isCancelled() ? null : Boolean.TRUE);
+        });
+
+        // If the caller cancels, the backend call is not needed anymore
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                timeout.cancel(false);
+                call.cancel(true);
+                release(start, null);
+            }
+        });
+
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> supplier) {
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** @param failed null if the call says nothing about the backend */
+    private void release(long start, Boolean failed) {
+
+        concurrencyLimit.release(System.nanoTime() - start, failed);
+
+        if (failed == null) {
+            circuitBreaker.onIgnored();
+        } else {
+            circuitBreaker.onResult(failed);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sends each translation to the backend that is currently best for its language pair.
+ *
+ * For each backend and language pair there's an exponentially weighted moving average (EWMA)
+ * of the latency and of the error rate, updated with every response. The score of a backend is
+ * its latency penalized by its error rate, and the lowest score wins. A small fraction of the requests
+ * go to a random backend, so the stats of the others stay current and a recovered backend gets traffic back.
+ *
+ * If the chosen backend fails, the request is retried once with the next best one.
+ * Detections are routed the same way, with stats of their own.
+ */
+public class RoutingTranslationService implements TranslationService {
+
+    /** Weight of the newest sample in the moving averages */
+    private static final double ALPHA = 0.2;
+    /** With an error rate of 1, the latency counts this many times more */
+    private static final double ERROR_PENALTY = 10;
+    /** Stats key of detections (language pairs always have a "-") */
+    private static final String DETECT_PAIR = "detect";
+
+    private final Map<String, TranslationService> backends;
+    private final double explorationRate;
+
+    /** By backend name and language pair (see {@link #statsKey}) */
+    private final Map<String, BackendStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * @param backends by name (used in logs); the first one is preferred while there are no stats
+     * @param explorationRate fraction of requests sent to a random backend
+     */
+    public RoutingTranslationService(LinkedHashMap<String, TranslationService> backends, double explorationRate) {
+        this.backends = backends;
+        this.explorationRate = explorationRate;
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+        return route(pairOf(request.langConfig), backend -> backend.translateAsync(request));
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return Futures.join(detectAsync(request));
+    }
+
+    /** Detections are routed like translations, with their own stats (as the pair {@value #DETECT_PAIR}) */
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return route(DETECT_PAIR, backend -> backend.detectAsync(request));
+    }
+
+    /** Backend names, best first */
+    List<String> rank(String pair) {
+        final List<String> names = new ArrayList<>(backends.keySet());
+        names.sort(Comparator.comparingDouble(name -> score(name, pair)));
+        return names;
+    }
+
+    /** Calls the best backend for the pair (or a random one, to explore), and the next best if it fails */
+    private <T> CompletableFuture<T> route(String pair, Function<TranslationService, CompletableFuture<T>> call) {
+
+        final List<String> ranking = rank(pair);
+
+        if (ranking.size() > 1 && ThreadLocalRandom.current().nextDouble() < explorationRate) {
+            // Try another one first, to keep its stats current
+            ranking.add(0, ranking.remove(1 + ThreadLocalRandom.current().nextInt(ranking.size() - 1)));
+        }
+
+        final CompletableFuture<T> first = callWith(ranking.get(0), pair, call);
+        if (ranking.size() == 1) return first;
+
+        final CompletableFuture<Throwable> failover = first.handle((result, e) -> e);
+
+        return Futures.thenCompose(Futures.propagateCancel(failover, first), e -> {
+            if (e == null) return first;
+            System.out.println("Backend " + ranking.get(0) + " failed, trying " + ranking.get(1) + ": " + Futures.unwrap(e));
+            return callWith(ranking.get(1), pair, call);
+        });
+    }
+
+    private <T> CompletableFuture<T> callWith(String backend, String pair, Function<TranslationService, CompletableFuture<T>> call) {
+
+        final BackendStats backendStats = stats.computeIfAbsent(statsKey(backend, pair), k -> new BackendStats());
+        final long start = System.nanoTime();
+
+        final CompletableFuture<T> result = call.apply(backends.get(backend));
+
+        result.whenComplete((value, e) -> {
+            if (result.isCancelled()) return; // Says nothing about the backend
+            backendStats.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), e != null);
+        });
+
+        return result;
+    }
+
+    /** Lower is better. Backends without stats get 0, so they are tried (in the given order). */
+    private double score(String backend, String pair) {
+        final BackendStats backendStats = stats.get(statsKey(backend, pair));
+        return backendStats == null ? 0 : backendStats.score();
+    }
+
+    private static String pairOf(LangConfig langConfig) {
+        return (langConfig.shouldDetectLang() ? "auto" : langConfig.getFrom()) + "-" + langConfig.getTo();
+    }
+
+    private static String statsKey(String backend, String pair) {
+        return backend + ":" + pair;
+    }
+
+    /** Latency and error rate of a backend for a language pair */
+    private static class BackendStats {
+
+        // Guarded by this
+        private double latencyMicros;
+        private double errorRate;
+        private boolean initialized;
+        private boolean hasLatency;
+
+        /** Only successful calls update the latency, since failures can be very fast (e.g. rejected calls) */
+        synchronized void record(long micros, boolean error) {
+            errorRate = initialized ? errorRate + ALPHA * ((error ? 1 : 0) - errorRate) : (error ? 1 : 0);
+            initialized = true;
+            if (!error) {
+                latencyMicros = hasLatency ? latencyMicros + ALPHA * (micros - latencyMicros) : micros;
+                hasLatency = true;
+            }
+        }
+
+        synchronized double score() {
+            if (!hasLatency) return errorRate > 0 ? Double.MAX_VALUE : 0; // Never succeeded: last resort
+            return latencyMicros * (1 + ERROR_PENALTY * errorRate);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import com.codethen.telegram.lanxatbot.translate.DetectRequest;
+import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationException;
+import com.codethen.telegram.lanxatbot.translate.TranslationPriority;
+import com.codethen.telegram.lanxatbot.translate.TranslationService;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Translates long texts sentence by sentence, so sentences already translated before
+ * (e.g. in an edited or forwarded message) are taken from the cache of the internal service.
+ *
+ * All sentences are requested at once, so the ones that are not cached end up in the same
+ * batch of the translation API (see {@link com.codethen.google.GoogleTranslateBatcher}).
+ * The language is detected once for the whole text, and the translation is reassembled
+ * keeping the original whitespace between sentences.
+ *
+ * Short texts are translated whole, since splitting them would lose context for little gain.
+ */
+public class SegmentingTranslationService implements TranslationService {
+
+    private final TranslationService internalService;
+    private final int minChars;
+
+    public SegmentingTranslationService(TranslationService internalService, int minChars) {
+        this.internalService = internalService;
+        this.minChars = minChars;
+    }
+
+    @Override
+    public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+
+        if (request.text.length() < minChars) return internalService.translateAsync(request);
+
+        final List<Segment> segments = split(request.text);
+        if (segments.size() < 2) return internalService.translateAsync(request);
+
+        System.out.println("Translating " + segments.size() + " sentences separately");
+
+        return Futures.thenCompose(internalService.langConfigToUseAsync(request),
+                langConfig -> translateSegments(segments, langConfig, request.priority));
+    }
+
+    private CompletableFuture<TranslationData> translateSegments(List<Segment> segments, LangConfig langConfig, TranslationPriority priority) {
+
+        final List<CompletableFuture<TranslationData>> translations = new ArrayList<>(segments.size());
+
+        for (Segment segment : segments) {
+            final TranslationData segmentRequest = new TranslationData();
+            segmentRequest.text = segment.sentence;
+            segmentRequest.langConfig = langConfig;
+            segmentRequest.priority = priority;
+            translations.add(internalService.translateAsync(segmentRequest));
+        }
+
+        final CompletableFuture<TranslationData> joined = CompletableFuture.allOf(translations.toArray(CompletableFuture[]::new)).thenApply(done -> {
+
+            final StringBuilder text = new StringBuilder();
+            for (int i = 0; i < segments.size(); i++) {
+                final Segment segment = segments.get(i);
+                text.append(segment.leadingSpace).append(translations.get(i).join().text).append(segment.trailingSpace);
+            }
+
+            final TranslationData result = new TranslationData();
+            result.text = text.toString();
+            result.langConfig = langConfig;
+            return result;
+        });
+
+        joined.whenComplete((translation, e) -> {
+            if (joined.isCancelled()) translations.forEach(segment -> segment.cancel(true));
+        });
+
+        return joined;
+    }
+
+    @Override
+    public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return internalService.detect(request);
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
+        return internalService.detectAsync(request);
+    }
+
+    /** Splits the text in sentences, keeping the surrounding whitespace apart so it can be restored */
+    static List<Segment> split(String text) {
+
+        final List<Segment> segments = new ArrayList<>();
+        final BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.ROOT);
+        iterator.setText(text);
+
+        int start = iterator.first();
+        for (int end = iterator.next(); end != BreakIterator.DONE; start = end, end = iterator.next()) {
+
+            int sentenceStart = start;
+            while (sentenceStart < end && Character.isWhitespace(text.charAt(sentenceStart))) sentenceStart++;
+            int sentenceEnd = end;
+            while (sentenceEnd > sentenceStart && Character.isWhitespace(text.charAt(sentenceEnd - 1))) sentenceEnd--;
+
+            if (sentenceStart == sentenceEnd) {
+                // Only whitespace: attach it to the previous segment
+                if (!segments.isEmpty()) segments.get(segments.size() - 1).trailingSpace += text.substring(start, end);
+                continue;
+            }
+
+            segments.add(new Segment(
+                    text.substring(start, sentenceStart),
+                    text.substring(sentenceStart, sentenceEnd),
+                    text.substring(sentenceEnd, end)));
+        }
+
+        return segments;
+    }
+
+    static class Segment {
+
+        final String leadingSpace;
+        final String sentence;
+        String trailingSpace;
+
+        Segment(String leadingSpace, String sentence, String trailingSpace) {
+            this.leadingSpace = leadingSpace;
+            this.sentence = sentence;
+            this.trailingSpace = trailingSpace;
+        }
+    }
+}
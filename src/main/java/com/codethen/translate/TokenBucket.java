@@ -0,0 +1,48 @@
+package com.codethen.translate;
+
+/**
+ * Budget that refills continuously up to its capacity, e.g. the characters per minute allowed by an API.
+ * Not thread safe: the owner synchronizes access.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefill;
+
+    /** Starts full */
+    public TokenBucket(long capacity, long nanosToRefill) {
+        this.capacity = capacity;
+        this.tokensPerNano = (double) capacity / nanosToRefill;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+
+    /** Tokens available now */
+    public double available(long now) {
+        refill(now);
+        return tokens;
+    }
+
+    /** Nanos until there are the given tokens available (0 if there are already) */
+    public long nanosUntil(double wanted, long now) {
+        refill(now);
+        return tokens >= wanted ? 0 : (long) Math.ceil((wanted - tokens) / tokensPerNano);
+    }
+
+    public void take(double taken, long now) {
+        refill(now);
+        tokens -= taken;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
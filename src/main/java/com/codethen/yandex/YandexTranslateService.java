@@ -1,16 +1,18 @@
 package com.codethen.yandex;
 
-import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import com.codethen.telegram.lanxatbot.profile.LangConfig;
 import com.codethen.telegram.lanxatbot.translate.DetectRequest;
 import com.codethen.telegram.lanxatbot.translate.DetectResponse;
+import com.codethen.telegram.lanxatbot.translate.Futures;
 import com.codethen.telegram.lanxatbot.translate.TranslationData;
 import com.codethen.telegram.lanxatbot.translate.TranslationException;
 import com.codethen.telegram.lanxatbot.translate.TranslationService;
 import com.codethen.yandex.model.TranslateResponse;
 import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Response;
 
 /**
@@ -27,46 +29,80 @@ public class YandexTranslateService implements TranslationService {
 
     @Override
     public TranslationData translate(TranslationData request) throws TranslationException {
+        return Futures.join(translateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<TranslationData> translateAsync(TranslationData request) {
+
+        if (!request.langConfig.shouldDetectLang()) {
+            return translateAsync(request.text, request.langConfig);
+        }
 
-        LangConfig langConfigToUse = langConfigToUse(request);
-        System.out.println("Translating " + langConfigToUse.shortDescription() + " : '" + request.text + "'");
+        return Futures.thenCompose(langConfigToUseAsync(request), langConfigToUse -> translateAsync(request.text, langConfigToUse));
+    }
+
+    private CompletableFuture<TranslationData> translateAsync(String text, LangConfig langConfigToUse) {
+
+        System.out.println("Translating " + langConfigToUse.shortDescription() + " : '" + text + "'");
 
         final String langs = langConfigToUse.getFrom() + "-" + langConfigToUse.getTo(); // Format required by Yandex
 
         // TODO (ferran) 25.02.2023 - set up API key
-        final Call<TranslateResponse> call = yandexApi.translate("API_KEY_HERE", request.text, langs);
-        final TranslateResponse response = executeCall(call);
-
-        final TranslationData result = new TranslationData();
-        result.text = response.text.get(0);
-        result.langConfig = langConfigToUse;
-        return result;
+        final CompletableFuture<TranslateResponse> response = enqueueCall(yandexApi.translate("API_KEY_HERE", text, langs));
+
+        return Futures.propagateCancel(response.thenApply(r -> {
+            final TranslationData result = new TranslationData();
+            result.text = r.text.get(0);
+            result.langConfig = langConfigToUse;
+            return result;
+        }), response);
     }
 
     @Override
     public DetectResponse detect(DetectRequest request) throws TranslationException {
+        return Futures.join(detectAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<DetectResponse> detectAsync(DetectRequest request) {
 
         final String hint = request.possibleLangs == null ? "" :
                 String.join(",", request.possibleLangs);
 
-        var response = executeCall(yandexApi.detect(request.apiKey, request.text, hint));
-
-        return new DetectResponse(List.of(response.lang));
+        return enqueueCall(yandexApi.detect(request.apiKey, request.text, hint))
+                .thenApply(response -> new DetectResponse(List.of(response.lang)));
     }
 
-    private <T> T executeCall(Call<T> call) {
+    /**
+     * Executes the call asynchronously (OkHttp doesn't keep a thread waiting for the response).
+     * Cancelling the returned future also cancels the call.
+     */
+    private <T> CompletableFuture<T> enqueueCall(Call<T> call) {
 
-        final Response<T> response;
-        try {
-            response = call.execute();
-        } catch (IOException e) {
-            throw new TranslationException("Unexpected error calling Yandex API", e);
-        }
+        final CompletableFuture<T> result = new CompletableFuture<>();
 
-        if (response.code() != 200) {
-            throw new TranslationException("Unexpected bad response from Yandex API");
-        }
+        call.enqueue(new Callback<>() {
+
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                if (response.code() != 200) {
+                    result.completeExceptionally(new TranslationException("Unexpected bad response from Yandex API: " + response.code() + " " + response.message()));
+                } else {
+                    result.complete(response.body());
+                }
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                result.completeExceptionally(new TranslationException("Unexpected error calling Yandex API", t));
+            }
+        });
 
-        return response.body();
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) call.cancel();
+        });
+
+        return result;
     }
 }
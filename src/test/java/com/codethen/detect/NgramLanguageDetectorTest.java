@@ -0,0 +1,78 @@
+package com.codethen.detect;
+
+import com.codethen.detect.NgramLanguageDetector.Detection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link NgramLanguageDetector} must only be confident when the text is in one of the candidates,
+ * since the translation API is not asked in that case (see the default min confidence in application.properties).
+ */
+class NgramLanguageDetectorTest {
+
+    private static final double MIN_CONFIDENCE = 0.9;
+
+    private static final NgramLanguageDetector detector = new NgramLanguageDetector();
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "Where is the train station?    | en",
+            "¿Dónde está la estación de tren? | es",
+            "On és l'estació de tren?        | ca",
+            "Dov'è la stazione?              | it",
+            "Onde fica a estação de trem?    | pt",
+            "Wo ist der Bahnhof?             | de",
+            "Где находится вокзал?           | ru",
+            "Де знаходиться вокзал?          | uk"
+    })
+    void detectsProfiledLanguages(String text, String lang) {
+        final Detection detection = detector.detect(text, NgramLanguageDetector.DEFAULT_LANGS);
+        assertEquals(lang, detection.lang);
+        assertTrue(detection.confidence >= MIN_CONFIDENCE, detection::toString);
+    }
+
+    @Test
+    void onlyConsidersCandidates() {
+        final Detection detection = detector.detect("On és l'estació de tren?", List.of("es", "ca"));
+        assertEquals("ca", detection.lang);
+        assertTrue(detection.confidence >= MIN_CONFIDENCE, detection::toString);
+    }
+
+    /** Dutch has no profile, and is taken for German if all profiled languages are considered */
+    @Test
+    void notConfidentWhenAnyLanguageIsPossible() {
+        assertUnknown(detector.detect("Goedemorgen, hoe gaat het met je?", List.of()));
+        assertUnknown(detector.detect("Goedemorgen, hoe gaat het met je?", null));
+    }
+
+    @Test
+    void notConfidentWhenSomeCandidateHasNoProfile() {
+        assertUnknown(detector.detect("Goedemorgen, hoe gaat het met je?", List.of("nl", "de")));
+        assertUnknown(detector.detect("Wo ist der Bahnhof?", List.of("nl", "de")));
+    }
+
+    /** Swedish has no profile, and its n-grams are mostly unknown to all profiles */
+    @Test
+    void notConfidentForUnknownNgrams() {
+        final Detection detection = detector.detect("Hej, hur mår du idag?", NgramLanguageDetector.DEFAULT_LANGS);
+        assertTrue(detection.confidence < MIN_CONFIDENCE, detection::toString);
+    }
+
+    @Test
+    void notConfidentForTooShortTexts() {
+        assertUnknown(detector.detect("ok!", NgramLanguageDetector.DEFAULT_LANGS));
+        assertUnknown(detector.detect("123 456", NgramLanguageDetector.DEFAULT_LANGS));
+    }
+
+    private static void assertUnknown(Detection detection) {
+        assertNull(detection.lang);
+        assertEquals(0, detection.confidence);
+    }
+}
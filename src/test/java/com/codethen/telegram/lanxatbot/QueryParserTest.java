@@ -0,0 +1,138 @@
+package com.codethen.telegram.lanxatbot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link QueryParser} must parse exactly like the regular expressions the bot used before it,
+ * which are kept here as the reference.
+ */
+class QueryParserTest {
+
+    private static final String hintsAndLangsPatternStr = "(?:\\(([a-z,]*)\\)\\s+)?\\.([a-z][a-z])\\.([a-z][a-z])";
+    private static final String langConfigPatternStr = "\\.(\\w+)";
+    private static final String messagePatternStr = "\\s+(.+)";
+
+    private static final Pattern hintsAndLangsAndMessagePattern = Pattern.compile(hintsAndLangsPatternStr + messagePatternStr);
+    private static final Pattern langConfigAndMessagePattern = Pattern.compile(langConfigPatternStr + messagePatternStr);
+    private static final Pattern hintsAndLangConfigSetupPattern = Pattern.compile(langConfigPatternStr + "\\s*=\\s*" + "(?:" + hintsAndLangsPatternStr + ")?");
+
+    /** Pieces of the random texts, chosen to hit the cases where the regular expressions backtrack */
+    private static final String[] FRAGMENTS = {
+            "(", ")", "(es,en)", "()", "(es)", ",", ".", ".en", ".ru", ".en.ru", ".e", "=", " = ",
+            "name", "a", "Z", "_", "1", "é", "x", "hello world",
+            " ", "  ", "\t", "\n", "\r", "\u000B", "\f", "\u0085", "\u2028", "\u2029", "\u00A0"
+    };
+
+    @Test
+    void documentedExamples() {
+
+        final ParsedQuery parsed = new ParsedQuery();
+
+        QueryParser.parseTranslation("(es,en) .en.ru x", parsed);
+        assertEquals(ParsedQuery.Kind.langs, parsed.kind);
+        assertEquals("es,en", parsed.hints);
+        assertEquals("en", parsed.langFrom);
+        assertEquals("ru", parsed.langTo);
+        assertEquals("x", parsed.text);
+
+        QueryParser.parseTranslation(".name x", parsed);
+        assertEquals(ParsedQuery.Kind.langConfigName, parsed.kind);
+        assertEquals("name", parsed.langConfigName);
+        assertEquals("x", parsed.text);
+
+        QueryParser.parseSetup(".name = (es) .en.ru", parsed);
+        assertEquals(ParsedQuery.Kind.setup, parsed.kind);
+        assertEquals("name", parsed.langConfigName);
+        assertEquals("es", parsed.hints);
+        assertEquals("en", parsed.langFrom);
+        assertEquals("ru", parsed.langTo);
+
+        QueryParser.parseSetup(".name =", parsed);
+        assertEquals(ParsedQuery.Kind.setup, parsed.kind);
+        assertEquals("name", parsed.langConfigName);
+        assertEquals(null, parsed.langFrom);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            ".en.ru x", "(es,en) .en.ru x", "() .en.ru x", ".name x", ".name =", ".name = (es) .en.ru",
+            ".name = .en.ru", ".name = () .en.ru", ".name=.en.ru", "hello", "", ".", ".en.ru", ".name",
+            // Only spaces after the languages or name: the last space is the message
+            ".en.ru ", ".en.ru   ", ".name \t ", "   ",
+            // Line breaks end the message
+            ".en.ru x\n", ".en.ru x\r\n", ".en.ru \n", ".name x\u0085", ".en.ru x\u2028y", ".en.ru x\u2029",
+            ".name =\n", ".name = .en.ru\n",
+            // Hints need a space before the languages
+            "(es).en.ru x", "(es)\t.en.ru x", "(ES) .en.ru x", "(es .en.ru x", ".name = (es).en.ru",
+            // Not languages, so maybe a name
+            ".EN.ru x", ".en.r x", ".en.ruu x", ".e x", ".en.ru.x y", ".name_1 x", ".nämé x", ".en.ru\u00A0x"
+    })
+    void sameAsRegularExpressions(String text) {
+        assertParity(text);
+    }
+
+    @Test
+    void sameAsRegularExpressionsForRandomTexts() {
+
+        final Random random = new Random(42);
+        final StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 200_000; i++) {
+            text.setLength(0);
+            if (random.nextBoolean()) text.append(random.nextBoolean() ? ".name" : ".en.ru");
+            final int fragments = random.nextInt(8);
+            for (int f = 0; f < fragments; f++) text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            assertParity(text.toString());
+        }
+    }
+
+    private static void assertParity(String text) {
+        assertEquals(expectedTranslation(text), describe(QueryParser.parseTranslation(text, new ParsedQuery())), "Translation: " + text);
+        assertEquals(expectedSetup(text), describe(QueryParser.parseSetup(text, new ParsedQuery())), "Setup: " + text);
+    }
+
+    /** How the bot parsed texts to translate with the regular expressions */
+    private static String expectedTranslation(String query) {
+
+        final Matcher hintsAndLangsAndMessage = hintsAndLangsAndMessagePattern.matcher(query);
+        if (hintsAndLangsAndMessage.matches()) {
+            return describe(ParsedQuery.Kind.langs, hintsAndLangsAndMessage.group(1), hintsAndLangsAndMessage.group(2),
+                    hintsAndLangsAndMessage.group(3), null, hintsAndLangsAndMessage.group(4));
+        }
+
+        final Matcher langConfigAndMessage = langConfigAndMessagePattern.matcher(query);
+        if (langConfigAndMessage.matches()) {
+            return describe(ParsedQuery.Kind.langConfigName, null, null, null,
+                    langConfigAndMessage.group(1), langConfigAndMessage.group(2));
+        }
+
+        return describe(ParsedQuery.Kind.plain, null, null, null, null, query);
+    }
+
+    /** How the bot parsed setup messages with the regular expression */
+    private static String expectedSetup(String text) {
+
+        final Matcher matcher = hintsAndLangConfigSetupPattern.matcher(text);
+        if (matcher.matches()) {
+            return describe(ParsedQuery.Kind.setup, matcher.group(2), matcher.group(3), matcher.group(4), matcher.group(1), null);
+        }
+
+        return describe(ParsedQuery.Kind.plain, null, null, null, null, text);
+    }
+
+    private static String describe(ParsedQuery parsed) {
+        return describe(parsed.kind, parsed.hints, parsed.langFrom, parsed.langTo, parsed.langConfigName, parsed.text);
+    }
+
+    private static String describe(ParsedQuery.Kind kind, String hints, String langFrom, String langTo, String langConfigName, String text) {
+        return kind + " hints=" + hints + " langs=" + langFrom + "," + langTo + " name=" + langConfigName + " text=" + text;
+    }
+}
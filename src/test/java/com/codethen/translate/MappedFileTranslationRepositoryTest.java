@@ -0,0 +1,263 @@
+package com.codethen.translate;
+
+import com.codethen.telegram.lanxatbot.profile.LangConfig;
+import com.codethen.telegram.lanxatbot.translate.TranslationData;
+import com.codethen.telegram.lanxatbot.translate.TranslationKey;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Recovery of {@link MappedFileTranslationRepository}. Crashes are simulated by leaving the files
+ * as a crash would: old copies of the index, torn records, leftover temp files.
+ */
+class MappedFileTranslationRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenKeepsTranslations() throws IOException {
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "hello", "hola");
+            save(repository, "bye", "adiós");
+        }
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertEquals(2, repository.getCount());
+            assertEquals("hola", find(repository, "hello"));
+            assertEquals("adiós", find(repository, "bye"));
+            assertNull(find(repository, "other"));
+        }
+    }
+
+    @Test
+    void savingAgainReplacesTranslation() throws IOException {
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "hello", "hola");
+            save(repository, "hello", "buenas");
+        }
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertEquals(1, repository.getCount());
+            assertEquals("buenas", find(repository, "hello"));
+        }
+    }
+
+    @Test
+    void lostIndexIsRebuilt() throws IOException {
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "hello", "hola");
+            save(repository, "hello", "buenas");
+            save(repository, "bye", "adiós");
+        }
+
+        Files.delete(indexPath());
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertEquals(2, repository.getCount());
+            assertEquals("buenas", find(repository, "hello"));
+            assertEquals("adiós", find(repository, "bye"));
+        }
+    }
+
+    @Test
+    void corruptIndexIsRebuilt() throws IOException {
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "hello", "hola");
+            save(repository, "bye", "adiós");
+        }
+
+        writeInt(indexPath(), 0, 0xDEADBEEF); // magic
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertEquals(2, repository.getCount());
+            assertEquals("hola", find(repository, "hello"));
+            assertEquals("adiós", find(repository, "bye"));
+        }
+    }
+
+    @Test
+    void unindexedTailIsRecovered() throws IOException {
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "hello", "hola");
+        }
+        final Path oldIndex = copyIndex();
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "bye", "adiós");
+        }
+
+        // As if the process died after appending "bye" to the log, but before the index was written
+        Files.copy(oldIndex, indexPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertEquals(2, repository.getCount());
+            assertEquals("hola", find(repository, "hello"));
+            assertEquals("adiós", find(repository, "bye"));
+        }
+    }
+
+    @Test
+    void tornLastRecordIsIgnored() throws IOException {
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "hello", "hola");
+        }
+        final Path oldIndex = copyIndex();
+        final int tornRecordPosition = readInt(oldIndex, 12); // logEnd
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "bye", "adiós");
+        }
+
+        // The last record was only partially written: its bytes don't match the CRC
+        Files.copy(oldIndex, indexPath(), StandardCopyOption.REPLACE_EXISTING);
+        writeInt(logPath(), tornRecordPosition + 30, 0);
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertEquals(1, repository.getCount());
+            assertEquals("hola", find(repository, "hello"));
+            assertNull(find(repository, "bye"));
+            save(repository, "thanks", "gracias"); // Overwrites the torn record
+        }
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertEquals(2, repository.getCount());
+            assertEquals("hola", find(repository, "hello"));
+            assertEquals("gracias", find(repository, "thanks"));
+        }
+    }
+
+    @Test
+    void compactionKeepsLiveTranslations() throws IOException {
+
+        try (MappedFileTranslationRepository repository = open()) {
+            for (int i = 0; i < 100; i++) save(repository, "text " + i % 10, "texto " + i);
+            repository.flush();
+            repository.compact();
+
+            assertEquals(10, repository.getCount());
+            for (int i = 0; i < 10; i++) assertEquals("texto " + (90 + i), find(repository, "text " + i));
+            assertFalse(Files.exists(tempPath(logPath())));
+
+            save(repository, "hello", "hola");
+        }
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertEquals(11, repository.getCount());
+            assertEquals("texto 95", find(repository, "text 5"));
+            assertEquals("hola", find(repository, "hello"));
+        }
+    }
+
+    @Test
+    void crashBeforeReplacingLogDuringCompaction() throws IOException {
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "hello", "hola");
+            save(repository, "hello", "buenas");
+        }
+
+        // The new log was being written when the process died
+        Files.write(tempPath(logPath()), new byte[100]);
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertFalse(Files.exists(tempPath(logPath())));
+            assertEquals(1, repository.getCount());
+            assertEquals("buenas", find(repository, "hello"));
+        }
+    }
+
+    @Test
+    void crashAfterReplacingLogDuringCompaction() throws IOException {
+
+        try (MappedFileTranslationRepository repository = open()) {
+            save(repository, "hello", "hola");
+            save(repository, "hello", "buenas");
+            save(repository, "bye", "adiós");
+        }
+        final Path oldIndex = copyIndex();
+
+        try (MappedFileTranslationRepository repository = open()) {
+            repository.compact();
+        }
+
+        // The log was replaced, but the process died before the index was updated
+        Files.copy(oldIndex, indexPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        try (MappedFileTranslationRepository repository = open()) {
+            assertEquals(2, repository.getCount());
+            assertEquals("buenas", find(repository, "hello"));
+            assertEquals("adiós", find(repository, "bye"));
+        }
+    }
+
+    private MappedFileTranslationRepository open() {
+        return new MappedFileTranslationRepository(directory, 1024, 1 << 20, 16);
+    }
+
+    private static void save(MappedFileTranslationRepository repository, String text, String translation) {
+        final TranslationData data = new TranslationData();
+        data.text = translation;
+        data.langConfig = new LangConfig(null, "en", "es");
+        repository.save(key(text), data);
+    }
+
+    private static String find(MappedFileTranslationRepository repository, String text) {
+        final TranslationData found = repository.find(key(text)).join();
+        return found == null ? null : found.text;
+    }
+
+    private static TranslationKey key(String text) {
+        return new TranslationKey(text, new LangConfig(null, "en", "es"));
+    }
+
+    private Path copyIndex() throws IOException {
+        final Path copy = directory.resolve("index-copy");
+        Files.copy(indexPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    private Path logPath() {
+        return directory.resolve(MappedFileTranslationRepository.LOG_FILE);
+    }
+
+    private Path indexPath() {
+        return directory.resolve(MappedFileTranslationRepository.INDEX_FILE);
+    }
+
+    private static Path tempPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    private static int readInt(Path path, int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.read(buffer, position);
+            return buffer.getInt(0);
+        }
+    }
+
+    private static void writeInt(Path path, int position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), position);
+        }
+    }
+}